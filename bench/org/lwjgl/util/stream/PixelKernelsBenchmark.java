@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Compares the packed (SWAR) {@link PixelKernels} with their scalar fallbacks at common resolutions, on rows padded like the
+ * streams pad them. It lives in the bench source root and is not part of the library. Run it with
+ * <code>java org.lwjgl.util.stream.PixelKernelsBenchmark [seconds per kernel]</code> with the compiled src and bench roots on
+ * the class path. It also checks that both implementations produce the same pixels, and exits with status 1 if they do not.
+ */
+public final class PixelKernelsBenchmark {
+
+	private static final int[][] RESOLUTIONS = {
+		{ 1280, 720 },
+		{ 1920, 1080 },
+		{ 2560, 1440 },
+		{ 3840, 2160 }
+	};
+
+	private static final int TILE_SIZE = 32;
+
+	private PixelKernelsBenchmark() {
+	}
+
+	private interface Kernel {
+
+		void run(ByteBuffer src, ByteBuffer trg, int stride, int width, int height, boolean swar);
+
+	}
+
+	public static void main(final String[] args) {
+		final long nanos = (long)((args.length < 1 ? 1.0 : Double.parseDouble(args[0])) * 1000 * 1000 * 1000);
+
+		final BitSet dirty = new BitSet();
+		final Kernel swizzle = new Kernel() {
+			public void run(final ByteBuffer src, final ByteBuffer trg, final int stride, final int width, final int height, final boolean swar) {
+				PixelKernels.swizzle(src, stride, trg, stride, width, height, swar);
+			}
+		};
+		final Kernel premultiply = new Kernel() {
+			public void run(final ByteBuffer src, final ByteBuffer trg, final int stride, final int width, final int height, final boolean swar) {
+				PixelKernels.premultiply(src, stride, trg, stride, width, height, swar);
+			}
+		};
+		final Kernel diff = new Kernel() {
+			public void run(final ByteBuffer src, final ByteBuffer trg, final int stride, final int width, final int height, final boolean swar) {
+				PixelKernels.diff(src, trg, stride, width, height, TILE_SIZE, dirty, swar);
+			}
+		};
+
+		System.out.println("Kernel       Resolution  Scalar ms  SWAR ms  Speed-up");
+		for ( int[] resolution : RESOLUTIONS ) {
+			final int width = resolution[0];
+			final int height = resolution[1];
+			final int stride = StreamUtil.getStride(width, StreamUtil.TEX_ROW_ALIGNMENT);
+
+			final ByteBuffer src = createFrame(stride * height);
+			final ByteBuffer scalar = ByteBuffer.allocateDirect(src.capacity());
+			final ByteBuffer swar = ByteBuffer.allocateDirect(src.capacity());
+
+			compare("swizzle", swizzle, src, scalar, swar, stride, width, height, nanos);
+			compare("premultiply", premultiply, src, scalar, swar, stride, width, height, nanos);
+
+			// Identical frames, the worst case: every row of every tile is compared
+			scalar.clear();
+			scalar.put(src.duplicate()).clear();
+			compare("diff", diff, src, scalar, scalar, stride, width, height, nanos);
+		}
+	}
+
+	private static ByteBuffer createFrame(final int bytes) {
+		final byte[] pixels = new byte[bytes];
+		new Random(42).nextBytes(pixels);
+
+		final ByteBuffer frame = ByteBuffer.allocateDirect(bytes);
+		frame.put(pixels).clear();
+		return frame;
+	}
+
+	private static void compare(
+		final String name, final Kernel kernel,
+		final ByteBuffer src, final ByteBuffer scalar, final ByteBuffer swar,
+		final int stride, final int width, final int height, final long nanos
+	) {
+		final double scalarTime = time(kernel, src, scalar, stride, width, height, false, nanos);
+		final double swarTime = time(kernel, src, swar, stride, width, height, true, nanos);
+
+		if ( scalar != swar && !scalar.equals(swar) ) {
+			System.err.println("FAILED: " + name + " results differ at " + width + "x" + height);
+			System.exit(1);
+		}
+
+		System.out.println(String.format("%-12s %4dx%-4d  %9.3f  %7.3f  %7.2fx", name, width, height, scalarTime, swarTime, scalarTime / swarTime));
+	}
+
+	/** Returns the average milliseconds per frame, after a warm-up of the same duration. */
+	private static double time(
+		final Kernel kernel,
+		final ByteBuffer src, final ByteBuffer trg, final int stride, final int width, final int height, final boolean swar,
+		final long nanos
+	) {
+		for ( long start = System.nanoTime(); System.nanoTime() - start < nanos; )
+			kernel.run(src, trg, stride, width, height, swar);
+
+		int frames = 0;
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			kernel.run(src, trg, stride, width, height, swar);
+			frames++;
+		} while ( (elapsed = System.nanoTime() - start) < nanos );
+
+		return elapsed / 1e6 / frames;
+	}
+
+}
@@ -1,8 +1,15 @@
 package com.badlogic.gdx.backends.lwjgl;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.scene.Scene;
 import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.Display;
@@ -18,9 +25,23 @@ import com.badlogic.gdx.utils.GdxRuntimeException;
 
 
 public class LwjglFXApplication extends LwjglApplication{
+
+	/** How the render loop paces its frames. */
+	public enum FramePacing {
+		/** {@link Display#sync(int)} with the foreground FPS if vsync is enabled. The background FPS always applies. */
+		DISPLAY_SYNC,
+		/** Frames are timed to finish just before the next JavaFX pulse, see {@link LwjglFXPulseTracker}. */
+		FX_PULSE,
+		/** {@link LwjglFXFrameLimiter} with the foreground or background FPS, regardless of vsync. */
+		PRECISE
+	}
 	
 	private boolean shouldRender, isActive = true;
 	LwjglFXInput input;
+	private volatile FramePacing framePacing = FramePacing.DISPLAY_SYNC;
+	private LwjglFXPulseTracker pulseTracker;
+	private LwjglFXFrameLimiter frameLimiter;
+	private final AtomicBoolean resizePending = new AtomicBoolean();
 	
 	public LwjglFXApplication (ApplicationListener listener, ImageView target) {
 		this(listener, target, new LwjglApplicationConfiguration());
@@ -30,36 +51,124 @@ public class LwjglFXApplication extends LwjglApplication{
 		this(listener, config, new LwjglFXGraphics(config, target));
 	}
 
+	/** @param frameCache keeps the last frame of every view on exit and shows it at the next start before the OpenGL context
+	 *           exists, may be null */
+	public LwjglFXApplication (ApplicationListener listener, ImageView target, LwjglApplicationConfiguration config,
+		LwjglFXFrameCache frameCache) {
+		this(listener, config, new LwjglFXGraphics(config, target, frameCache));
+	}
+
 	public LwjglFXApplication (ApplicationListener listener, LwjglApplicationConfiguration config, LwjglFXGraphics graphics) {
 		super(listener, config, graphics);
 		input = new LwjglFXInput(graphics.target);
+		input.wakeup = graphics.wakeup;
 		Gdx.input = input;
 	}
+
+	@Override
+	public void postRunnable (Runnable runnable) {
+		super.postRunnable(runnable);
+		((LwjglFXGraphics)graphics).wakeup.signal();
+	}
 	
+	public synchronized void setFramePacing (FramePacing framePacing) {
+		if (this.framePacing == framePacing) return;
+		if (framePacing == FramePacing.FX_PULSE) {
+			if (pulseTracker == null) pulseTracker = new LwjglFXPulseTracker();
+			pulseTracker.start();
+		} else if (pulseTracker != null) pulseTracker.stop();
+		if (framePacing == FramePacing.PRECISE && frameLimiter == null) frameLimiter = new LwjglFXFrameLimiter();
+		this.framePacing = framePacing;
+	}
+
+	public FramePacing getFramePacing () {
+		return framePacing;
+	}
+
+	/** @return the tracker reporting phase error and missed pulses, or null if {@link FramePacing#FX_PULSE} was never set */
+	public synchronized LwjglFXPulseTracker getPulseTracker () {
+		return pulseTracker;
+	}
+
+	/** @return the limiter reporting oversleep and jitter, or null if {@link FramePacing#PRECISE} was never set */
+	public synchronized LwjglFXFrameLimiter getFrameLimiter () {
+		return frameLimiter;
+	}
+
+	/** Adds a view with its own stream, which is rendered by {@link LwjglFXViewListener#render(String)} in the same context as
+	 * the main view. The listener of this application must be a {@link LwjglFXViewListener}. The stream follows the fit size of
+	 * the view. */
+	public void addView (String name, ImageView view) {
+		if (!(listener instanceof LwjglFXViewListener))
+			throw new GdxRuntimeException("Additional views require a LwjglFXViewListener.");
+		LwjglFXGraphics graphics = (LwjglFXGraphics)this.graphics;
+		if (graphics.frameCache != null && view.getImage() == null) graphics.frameCache.show(name, view);
+		LwjglFXViewVisibility visibility = new LwjglFXViewVisibility(view, () -> graphics.wakeup.signal());
+		view.fitWidthProperty().addListener(e -> graphics.requestRendering());
+		view.fitHeightProperty().addListener(e -> graphics.requestRendering());
+		postRunnable(() -> graphics.toFX.addView(name, view, visibility));
+	}
+
+	/** Removes a view added with {@link #addView(String, ImageView)} and destroys its stream. */
+	public void removeView (String name) {
+		postRunnable(() -> ((LwjglFXGraphics)graphics).toFX.removeView(name));
+	}
+
+	/** Called for every change of the fit size. A drag of the window edge fires these continuously, so all changes up to the
+	 * next frame are coalesced into one resize, which uses the size at that time. */
 	private void resize(){
+		if (!resizePending.compareAndSet(false, true)) return;
+		postRunnable(() -> {
+			resizePending.set(false);
+			ImageView target = ((LwjglFXGraphics)graphics).target;
+			int width = (int)target.fitWidthProperty().get();
+			int height = (int)target.fitHeightProperty().get();
+			graphics.resize = false;
+			graphics.config.width = width;
+			graphics.config.height = height;
+			if (listener != null) listener.resize(width, height);
+			shouldRender = true;
+			graphics.requestRendering();
+		});
+	}
+
+	/** @return the timing of the startup stages */
+	public LwjglFXStartup getStartup () {
+		return ((LwjglFXGraphics)graphics).startup;
+	}
+
+	/** Blocks until the target is shown in a stage, which JavaFX may still be setting up. */
+	private static Stage awaitStage (ImageView target) {
+		CompletableFuture<Stage> result = new CompletableFuture<Stage>();
 		Platform.runLater(() -> {
-			Gdx.app.postRunnable(() -> {
-				ImageView target = ((LwjglFXGraphics)graphics).target;
-				int width = (int)target.fitWidthProperty().get();
-				int height = (int)target.fitHeightProperty().get();
-				graphics.resize = false;
-				graphics.config.width = width;
-				graphics.config.height = height;
-				if (listener != null) listener.resize(width, height);
-				shouldRender = true;
-				graphics.requestRendering();
-			});
+			InvalidationListener check = new InvalidationListener() {
+				@Override
+				public void invalidated (Observable o) {
+					Scene scene = target.getScene();
+					Window window = scene == null ? null : scene.getWindow();
+					if (window instanceof Stage) {
+						target.sceneProperty().removeListener(this);
+						scene.windowProperty().removeListener(this);
+						result.complete((Stage)window);
+					} else if (scene != null) {
+						scene.windowProperty().removeListener(this);
+						scene.windowProperty().addListener(this);
+					}
+				}
+			};
+			target.sceneProperty().addListener(check);
+			check.invalidated(null);
 		});
+		return result.join();
 	}
 
 	@Override
 	void mainLoop () {
 		Array<LifecycleListener> lifecycleListeners = this.lifecycleListeners;
 		ImageView target = ((LwjglFXGraphics)graphics).target;
-		Stage stage = (Stage)target.getScene().getWindow();
-		target.fitWidthProperty().addListener(e -> resize());
-		target.fitHeightProperty().addListener(e -> resize());
-		stage.setOnCloseRequest(e -> exit());
+		LwjglFXStartup startup = ((LwjglFXGraphics)graphics).startup;
+
+		// The context and the stream do not depend on the scene, so they are set up while JavaFX still builds it
 		LwjglToJavaFX toFX;
 		try {
 			graphics.setupDisplay();
@@ -68,12 +177,27 @@ public class LwjglFXApplication extends LwjglApplication{
 		} catch (LWJGLException e) {
 			throw new GdxRuntimeException(e);
 		}
+		startup.contextReady = System.nanoTime();
+		toFX.firstFrameListener = () -> {
+			startup.firstFrame = System.nanoTime();
+			Gdx.app.log("LwjglFXApplication", "Startup: " + startup);
+		};
+
+		Stage stage = awaitStage(target);
+		startup.sceneReady = System.nanoTime();
+		target.fitWidthProperty().addListener(e -> resize());
+		target.fitHeightProperty().addListener(e -> resize());
+		stage.setOnCloseRequest(e -> exit());
+		stage.focusedProperty().addListener(e -> ((LwjglFXGraphics)graphics).wakeup.signal());
 
 		listener.create();
+		startup.created = System.nanoTime();
 		graphics.resize = true;
 
 		graphics.lastTime = System.nanoTime();
 		boolean wasActive = true;
+		int forcedFrames = 0;
+		LwjglFXViewVisibility visibility = ((LwjglFXGraphics)graphics).visibility;
 		while (running) {
 			isActive = stage.isFocused();
 			if (wasActive && !isActive) { // if it's just recently minimized from active state
@@ -98,6 +222,8 @@ public class LwjglFXApplication extends LwjglApplication{
 			graphics.config.y = (int) ((LwjglFXGraphics)graphics).target.getLayoutY();
 
 			if (executeRunnables()) shouldRender = true;
+			// Assets uploaded on shared contexts whose fences have signaled
+			if (((LwjglFXGraphics)graphics).pollFences()) shouldRender = true;
 
 			// If one of the runnables set running to false, for example after an exit().
 			if (!running) break;
@@ -105,20 +231,54 @@ public class LwjglFXApplication extends LwjglApplication{
 			input.processEvents();
 			if (audio != null) audio.update();
 
-			if (!isActive && graphics.config.backgroundFPS == -1) shouldRender = false;
-			int frameRate = isActive ? graphics.config.foregroundFPS : graphics.config.backgroundFPS;
+			// A hidden view is not read back, it only keeps rendering at the background frame rate
+			boolean isVisible = visibility.isVisible();
+			// Other views keep the application in the foreground while the main view is hidden
+			boolean anyVisible = isVisible || listener instanceof LwjglFXViewListener && toFX.isAnyViewVisible();
+			if ((!isActive || !anyVisible) && graphics.config.backgroundFPS == -1) shouldRender = false;
+			int frameRate = isActive && anyVisible ? graphics.config.foregroundFPS : graphics.config.backgroundFPS;
+			// Push enough frames through the stream to replace the stale ones buffered before the view was hidden
+			if (visibility.consumeBecameVisible()) forcedFrames = toFX.getTransfersToBuffer();
+			if (forcedFrames > 0 && isVisible) {
+				forcedFrames--;
+				shouldRender = true;
+			}
+			FramePacing framePacing = this.framePacing;
+			LwjglFXPulseTracker pulseTracker = framePacing == FramePacing.FX_PULSE ? getPulseTracker() : null;
 			if (shouldRender) {
+				if (pulseTracker != null) pulseTracker.waitForRenderSlot();
+				long renderStart = System.nanoTime();
 				graphics.updateTime();
-				toFX.begin();
-				listener.render();
-				toFX.end();
+				if (isVisible) {
+					toFX.begin();
+					listener.render();
+					toFX.end();
+				} else {
+					listener.render();
+					toFX.idle(System.nanoTime());
+				}
+				if (listener instanceof LwjglFXViewListener) toFX.renderViews((LwjglFXViewListener)listener);
+				toFX.flushUploads();
+				input.frameRendered();
+				if (pulseTracker != null) pulseTracker.frameRendered(renderStart, System.nanoTime());
 			} else {
-				// Sleeps to avoid wasting CPU in an empty loop.
+				// Parks until input, a runnable, a rendering request, a resize or a focus change arrives. Audio still needs
+				// regular updates, so it only parks for one frame at the idle frame rate then.
 				if (frameRate == -1) frameRate = 10;
 				if (frameRate == 0) frameRate = graphics.config.backgroundFPS;
-				if (frameRate == 0) frameRate = 30;
+				if (frameRate <= 0) frameRate = 30;
+				long timeout = Math.min(audio != null ? 1000000000L / frameRate : Long.MAX_VALUE, toFX.idle(System.nanoTime()));
+				// Fences cannot wake the thread, they are polled every millisecond while runnables wait for them
+				if (((LwjglFXGraphics)graphics).hasPendingFences()) timeout = Math.min(timeout, 1000000);
+				((LwjglFXGraphics)graphics).wakeup.await(timeout);
+				continue;
 			}
-			if (frameRate > 0 && graphics.vsync) Display.sync(frameRate);
+			boolean background = !isActive || !anyVisible;
+			if (framePacing == FramePacing.PRECISE)
+				getFrameLimiter().sync(frameRate);
+			// Background frames are throttled whatever the vsync setting, neither vsync nor the pulses pace a hidden view
+			else if (frameRate > 0 && (background || graphics.vsync && framePacing == FramePacing.DISPLAY_SYNC))
+				Display.sync(frameRate);
 		}
 
 		synchronized (lifecycleListeners) {
@@ -129,6 +289,7 @@ public class LwjglFXApplication extends LwjglApplication{
 		}
 		listener.pause();
 		listener.dispose();
+		if (pulseTracker != null) pulseTracker.stop();
 		toFX.dispose();
 		if (audio != null) audio.dispose();
 		if (graphics.config.forceExit) System.exit(-1);
@@ -0,0 +1,119 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/** Keeps the last frame of every view in a directory, so the next start can show it before the OpenGL context exists. Each
+ * frame is a raw, memory-mapped file of premultiplied BGRA pixels in the bottom-up order of the stream, named after the view
+ * and its size. Only the file of the last saved size is kept per view. If no file matches the current fit size of the view,
+ * the last saved one is shown scaled.
+ * <p>
+ * All methods must be called on the JavaFX thread. */
+public class LwjglFXFrameCache {
+	private static final String SUFFIX = ".bgra";
+
+	private final File directory;
+
+	public LwjglFXFrameCache (File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory () {
+		return directory;
+	}
+
+	/** Shows the cached frame of the view, if there is one.
+	 * @return whether a frame was shown */
+	public boolean show (String name, ImageView view) {
+		File file = find(name, (int)view.getFitWidth(), (int)view.getFitHeight());
+		if (file == null) return false;
+		int[] size = parseSize(name, file);
+		if (size == null) return false;
+		int width = size[0], height = size[1];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() != (long)width * height * 4) return false;
+			MappedByteBuffer data = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			WritableImage image = new WritableImage(width, height);
+			image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), data, width * 4);
+			view.setScaleY(-1);
+			view.setViewport(null);
+			view.setImage(image);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/** Saves the part of the image shown by the view and deletes the frames of other sizes. */
+	public void save (String name, ImageView view) {
+		Image image = view.getImage();
+		if (image == null || image.getPixelReader() == null) return;
+		Rectangle2D viewport = view.getViewport();
+		int width = (int)(viewport == null ? image.getWidth() : viewport.getWidth());
+		int height = (int)(viewport == null ? image.getHeight() : viewport.getHeight());
+		if (width <= 1 || height <= 1) return;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) return;
+		File file = new File(directory, getFileName(name, width, height));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			long bytes = (long)width * height * 4;
+			raf.setLength(bytes);
+			MappedByteBuffer data = channel.map(MapMode.READ_WRITE, 0, bytes);
+			image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), data, width * 4);
+			data.force();
+		} catch (IOException e) {
+			file.delete();
+			return;
+		}
+
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		for (File other : files)
+			if (!other.equals(file) && parseSize(name, other) != null) other.delete();
+	}
+
+	/** @return the file of the given size, or else the file of any size, or null */
+	private File find (String name, int width, int height) {
+		File file = new File(directory, getFileName(name, width, height));
+		if (file.isFile()) return file;
+		File[] files = directory.listFiles();
+		if (files == null) return null;
+		File latest = null;
+		for (File other : files)
+			if (parseSize(name, other) != null && (latest == null || other.lastModified() > latest.lastModified())) latest = other;
+		return latest;
+	}
+
+	private static String getFileName (String name, int width, int height) {
+		return getPrefix(name) + width + "x" + height + SUFFIX;
+	}
+
+	private static String getPrefix (String name) {
+		return name.replaceAll("[^A-Za-z0-9_-]", "_") + ".";
+	}
+
+	/** @return the width and height encoded in the name of a frame file of the view, or null if it is none */
+	private static int[] parseSize (String name, File file) {
+		String fileName = file.getName(), prefix = getPrefix(name);
+		if (!fileName.startsWith(prefix) || !fileName.endsWith(SUFFIX)) return null;
+		String size = fileName.substring(prefix.length(), fileName.length() - SUFFIX.length());
+		int x = size.indexOf('x');
+		if (x == -1) return null;
+		try {
+			int width = Integer.parseInt(size.substring(0, x)), height = Integer.parseInt(size.substring(x + 1));
+			return width > 0 && height > 0 ? new int[] {width, height} : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/** Limits the frame rate by parking the render thread for most of the remaining frame time and spinning for the last part.
+ * <p>
+ * How much longer {@link LockSupport#parkNanos(long)} actually sleeps than requested is measured on every park, and the
+ * spin window is sized from the variation of that oversleep. The lateness of every frame is counted in a histogram with the
+ * upper bounds of {@link #JITTER_BUCKETS}, plus one last bucket for everything above. */
+public class LwjglFXFrameLimiter {
+	/** Upper bounds of the jitter histogram buckets in nanoseconds. */
+	public static final long[] JITTER_BUCKETS = {10000, 25000, 50000, 100000, 250000, 500000, 1000000, 5000000};
+
+	static public long minSpinTime = 20000;
+	static public long maxSpinTime = 2000000;
+
+	private long nextFrame;
+	private long oversleep = 50000, oversleepDeviation = 50000;
+	private final long[] histogram = new long[JITTER_BUCKETS.length + 1];
+
+	/** Blocks until the next frame is due at the given frame rate. If the caller fell behind by more than one frame, the
+	 * schedule is restarted instead of rendering the missed frames back to back. */
+	public void sync (int fps) {
+		if (fps <= 0) return;
+		long period = 1000000000L / fps;
+		long now = System.nanoTime();
+		if (nextFrame == 0 || now - nextFrame > period) nextFrame = now;
+
+		long target = nextFrame;
+		long spin = getSpinTime();
+		while (true) {
+			long sleep = target - System.nanoTime() - spin - oversleep;
+			if (sleep <= 0) break;
+			long before = System.nanoTime();
+			LockSupport.parkNanos(sleep);
+			long overshoot = System.nanoTime() - before - sleep;
+			// Early wake ups (spurious or interrupts) tell nothing about the oversleep
+			if (overshoot >= 0) {
+				long error = overshoot - oversleep;
+				oversleep += error / 8;
+				oversleepDeviation += (Math.abs(error) - oversleepDeviation) / 8;
+			}
+		}
+		while ((now = System.nanoTime()) < target)
+			Thread.yield();
+
+		record(now - target);
+		nextFrame = target + period;
+	}
+
+	private void record (long late) {
+		int bucket = 0;
+		while (bucket < JITTER_BUCKETS.length && late > JITTER_BUCKETS[bucket])
+			bucket++;
+		synchronized (histogram) {
+			histogram[bucket]++;
+		}
+	}
+
+	/** @return the time spun before a frame in nanoseconds, twice the measured deviation of the oversleep */
+	public long getSpinTime () {
+		return Math.max(minSpinTime, Math.min(maxSpinTime, 2 * oversleepDeviation));
+	}
+
+	/** @return the average time in nanoseconds a park lasts longer than requested, which is subtracted from each park */
+	public long getOversleep () {
+		return oversleep;
+	}
+
+	/** @return a copy of the frame lateness histogram, see {@link #JITTER_BUCKETS} */
+	public long[] getJitterHistogram () {
+		synchronized (histogram) {
+			return histogram.clone();
+		}
+	}
+
+	public void resetJitterHistogram () {
+		synchronized (histogram) {
+			Arrays.fill(histogram, 0);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import static org.lwjgl.opengl.ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.ARBGetProgramBinary.glProgramParameteri;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+
+/** Links programs through a {@link LwjglFXProgramCache}. Compiling a shader is deferred until its program is linked and no
+ * cached binary was found, so a cache hit skips the compilation entirely. Until then the compile status of a shader reads as
+ * successful; a failed deferred compilation fails the link and its log is part of the program info log. */
+final class LwjglFXGL20 extends LwjglGL20 {
+	private final LwjglFXProgramCache cache;
+
+	private final IntMap<Shader> shaders = new IntMap<Shader>();
+	private final IntMap<Program> programs = new IntMap<Program>();
+
+	LwjglFXGL20 (LwjglFXProgramCache cache) {
+		this.cache = cache;
+	}
+
+	private static final class Shader {
+		final int type;
+		String source = "";
+		boolean pending;
+
+		Shader (int type) {
+			this.type = type;
+		}
+	}
+
+	private static final class Program {
+		final IntArray shaders = new IntArray();
+		final StringBuilder bindings = new StringBuilder();
+		String compileLog = "";
+	}
+
+	/** Compiles the shader if its compilation was deferred.
+	 * @return the info log if the compilation failed, otherwise null */
+	private String compile (int handle) {
+		Shader shader = shaders.get(handle);
+		if (shader == null || !shader.pending) return null;
+		shader.pending = false;
+		super.glCompileShader(handle);
+		if (org.lwjgl.opengl.GL20.glGetShaderi(handle, GL_COMPILE_STATUS) == GL_TRUE) return null;
+		return super.glGetShaderInfoLog(handle);
+	}
+
+	@Override
+	public int glCreateShader (int type) {
+		int handle = super.glCreateShader(type);
+		shaders.put(handle, new Shader(type));
+		return handle;
+	}
+
+	@Override
+	public void glShaderSource (int handle, String string) {
+		Shader shader = shaders.get(handle);
+		if (shader != null) shader.source = string;
+		super.glShaderSource(handle, string);
+	}
+
+	@Override
+	public void glCompileShader (int handle) {
+		Shader shader = shaders.get(handle);
+		if (shader != null)
+			shader.pending = true;
+		else
+			super.glCompileShader(handle);
+	}
+
+	@Override
+	public void glGetShaderiv (int handle, int pname, IntBuffer params) {
+		Shader shader = shaders.get(handle);
+		if (pname == GL_COMPILE_STATUS && shader != null && shader.pending) {
+			params.put(params.position(), GL_TRUE);
+			return;
+		}
+		compile(handle);
+		super.glGetShaderiv(handle, pname, params);
+	}
+
+	@Override
+	public String glGetShaderInfoLog (int handle) {
+		compile(handle);
+		return super.glGetShaderInfoLog(handle);
+	}
+
+	@Override
+	public void glDeleteShader (int handle) {
+		shaders.remove(handle);
+		super.glDeleteShader(handle);
+	}
+
+	@Override
+	public int glCreateProgram () {
+		int handle = super.glCreateProgram();
+		programs.put(handle, new Program());
+		return handle;
+	}
+
+	@Override
+	public void glAttachShader (int handle, int shader) {
+		Program program = programs.get(handle);
+		if (program != null) program.shaders.add(shader);
+		super.glAttachShader(handle, shader);
+	}
+
+	@Override
+	public void glDetachShader (int handle, int shader) {
+		Program program = programs.get(handle);
+		if (program != null) program.shaders.removeValue(shader);
+		super.glDetachShader(handle, shader);
+	}
+
+	@Override
+	public void glBindAttribLocation (int handle, int index, String name) {
+		Program program = programs.get(handle);
+		if (program != null) program.bindings.append(index).append('=').append(name).append(';');
+		super.glBindAttribLocation(handle, index, name);
+	}
+
+	@Override
+	public void glLinkProgram (int handle) {
+		Program program = programs.get(handle);
+		if (program == null) {
+			super.glLinkProgram(handle);
+			return;
+		}
+
+		String key = getKey(program);
+		if (key != null && cache.load(handle, key)) return;
+
+		StringBuilder compileLog = new StringBuilder();
+		for (int i = 0; i < program.shaders.size; i++) {
+			String log = compile(program.shaders.get(i));
+			if (log != null) compileLog.append(log).append('\n');
+		}
+		program.compileLog = compileLog.toString();
+
+		if (key != null) glProgramParameteri(handle, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+		super.glLinkProgram(handle);
+		if (key != null && org.lwjgl.opengl.GL20.glGetProgrami(handle, GL_LINK_STATUS) == GL_TRUE) cache.store(handle, key);
+	}
+
+	/** @return the cache key of the program, or null if a shader was not created through this instance */
+	private String getKey (Program program) {
+		int[] types = new int[program.shaders.size];
+		String[] sources = new String[types.length];
+		for (int i = 0; i < sources.length; i++) {
+			Shader shader = shaders.get(program.shaders.get(i));
+			if (shader == null) return null;
+			types[i] = shader.type;
+			sources[i] = shader.source;
+		}
+		return cache.getKey(types, sources, program.bindings.toString());
+	}
+
+	@Override
+	public String glGetProgramInfoLog (int handle) {
+		Program program = programs.get(handle);
+		String log = super.glGetProgramInfoLog(handle);
+		return program == null ? log : program.compileLog + log;
+	}
+
+	@Override
+	public void glDeleteProgram (int handle) {
+		programs.remove(handle);
+		super.glDeleteProgram(handle);
+	}
+}
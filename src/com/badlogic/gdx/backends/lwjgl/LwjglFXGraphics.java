@@ -16,28 +16,66 @@
 
 package com.badlogic.gdx.backends.lwjgl;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Pixmap.Format;
-import com.badlogic.gdx.utils.GdxRuntimeException;
+import static org.lwjgl.opengl.GL32.GL_TIMEOUT_EXPIRED;
+import static org.lwjgl.opengl.GL32.GL_WAIT_FAILED;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
 
-import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javafx.application.Platform;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
 
 import org.lwjgl.LWJGLException;
-import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.GLSync;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectSet;
 
 
 public class LwjglFXGraphics extends LwjglGraphics {
 	ImageView target;
 	LwjglToJavaFX toFX;
+	final LwjglFXWakeup wakeup = new LwjglFXWakeup();
+	final LwjglFXViewVisibility visibility;
+	final LwjglFXStartup startup = new LwjglFXStartup();
+	final LwjglFXFrameCache frameCache;
+	private LwjglFXProgramCache programCache;
+	private final ConcurrentLinkedQueue<Handoff> handoffs = new ConcurrentLinkedQueue<Handoff>();
+	// Only accessed on the render thread
+	private final Array<Handoff> pendingHandoffs = new Array<Handoff>();
+	private final ObjectSet<Thread> blockedThreads = new ObjectSet<Thread>();
+	private int viewWidth = -1, viewHeight = -1;
 
 	LwjglFXGraphics (LwjglApplicationConfiguration config, ImageView target) {
+		this(config, target, null);
+	}
+
+	/** @param frameCache shows the last frame of the previous run until the first frame arrives, may be null */
+	LwjglFXGraphics (LwjglApplicationConfiguration config, ImageView target, LwjglFXFrameCache frameCache) {
 		super(config);
 		this.target = target;
+		this.frameCache = frameCache;
+		this.visibility = new LwjglFXViewVisibility(target, () -> wakeup.signal());
+		if (Platform.isFxApplicationThread())
+			showPlaceholder();
+		else
+			Platform.runLater(() -> showPlaceholder());
+	}
+
+	/** Fills the view with the cached frame or the initial background color until the first frame arrives. */
+	private void showPlaceholder () {
+		if (target.getImage() != null) return;
+		if (frameCache != null && frameCache.show(LwjglToJavaFX.MAIN_VIEW, target)) return;
+		WritableImage placeholder = new WritableImage(1, 1);
+		Color color = config.initialBackgroundColor;
+		placeholder.getPixelWriter().setColor(0, 0, new javafx.scene.paint.Color(color.r, color.g, color.b, 1));
+		target.setImage(placeholder);
 	}
 	
 	LwjglFXGraphics (ImageView target) {
@@ -46,53 +84,131 @@ public class LwjglFXGraphics extends LwjglGraphics {
 	
 	@Override
 	public int getHeight () {
+		if (viewHeight >= 0) return viewHeight;
 		return (int) target.getLayoutBounds().getHeight();
 	}
 	
 	@Override
 	public int getWidth () {
+		if (viewWidth >= 0) return viewWidth;
 		return (int) target.getLayoutBounds().getWidth();
 	}
 
+	/** Makes {@link #getWidth()} and {@link #getHeight()} report the size of another view while it is rendered. Render thread
+	 * only.
+	 * @param width the width of the view, or -1 to report the size of the main view again */
+	void setViewSize (int width, int height) {
+		viewWidth = width;
+		viewHeight = height;
+	}
+
+	/** Creates the only context of the application, the offscreen pbuffer of {@link LwjglToJavaFX}. No native Display window
+	 * is created or configured, so the initial background color, the location and the icons of the configuration are
+	 * ignored. */
 	@Override
 	void setupDisplay () throws LWJGLException {
-		if (canvas != null) {
-			Display.setParent(canvas);
-		} else {
-			if (!setDisplayMode(config.width, config.height, config.fullscreen))
-				throw new GdxRuntimeException("Couldn't set display mode " + config.width + "x" + config.height + ", fullscreen: "
-					+ config.fullscreen);
-
-			if (config.iconPaths.size > 0) {
-				ByteBuffer[] icons = new ByteBuffer[config.iconPaths.size];
-				for (int i = 0, n = config.iconPaths.size; i < n; i++) {
-					Pixmap pixmap = new Pixmap(Gdx.files.getFileHandle(config.iconPaths.get(i), config.iconFileTypes.get(i)));
-					if (pixmap.getFormat() != Format.RGBA8888) {
-						Pixmap rgba = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Format.RGBA8888);
-						rgba.drawPixmap(pixmap, 0, 0);
-						pixmap = rgba;
-					}
-					icons[i] = ByteBuffer.allocateDirect(pixmap.getPixels().limit());
-					icons[i].put(pixmap.getPixels()).flip();
-					pixmap.dispose();
+		bufferFormat = new BufferFormat(config.r, config.g, config.b, config.a, config.depth, config.stencil, config.samples, false);
+		this.toFX = new LwjglToJavaFX(target);
+		toFX.frameCache = frameCache;
+		initiateGLInstances();
+
+		// Shaders compiled in create() are linked through the program cache, unless the GL30 interface is requested
+		programCache = gl30 == null ? LwjglFXProgramCache.create() : null;
+		if (programCache != null) {
+			gl20 = new LwjglFXGL20(programCache);
+			Gdx.gl = gl20;
+			Gdx.gl20 = gl20;
+		}
+	}
+
+	/** @return the cache of linked programs, or null if it is disabled or not supported by the driver */
+	public LwjglFXProgramCache getProgramCache () {
+		return programCache;
+	}
+
+	/** Creates a context shared with the context of the render thread, for uploading assets on a worker thread. May be called
+	 * on any thread once the context of the application exists, that is from {@link com.badlogic.gdx.ApplicationListener#create()}
+	 * on. */
+	public LwjglFXSharedContext createSharedContext () {
+		if (LwjglToJavaFX.drawable == null) throw new GdxRuntimeException("The context of the application does not exist yet.");
+		return new LwjglFXSharedContext(LwjglToJavaFX.drawable);
+	}
+
+	/** Runs the runnable on the render thread once the fence has signaled, and deletes the fence. The runnables passed by one
+	 * thread run in the order they were passed, a runnable waits for the fences of the earlier ones as well. Runnables of different
+	 * threads are not ordered. May be called on any thread.
+	 * @param fence a fence from {@link LwjglFXSharedContext#fence()}, if null the runnable runs with the next frame once the
+	 *           earlier runnables of the thread have run */
+	public void whenSignaled (GLSync fence, Runnable runnable) {
+		handoffs.offer(new Handoff(fence, runnable));
+		wakeup.signal();
+	}
+
+	/** Runs the runnables passed to {@link #whenSignaled(GLSync, Runnable)} whose fences have signaled, up to the first fence
+	 * of each thread that has not. Called by the render loop, it never blocks.
+	 * @return whether a runnable ran
+	 * @throws GdxRuntimeException if waiting on a fence failed */
+	boolean pollFences () {
+		Handoff handoff;
+		while ((handoff = handoffs.poll()) != null)
+			pendingHandoffs.add(handoff);
+
+		boolean ran = false;
+		blockedThreads.clear();
+		for (int i = 0; i < pendingHandoffs.size;) {
+			handoff = pendingHandoffs.get(i);
+			if (blockedThreads.contains(handoff.thread)) {
+				i++;
+				continue;
+			}
+			if (handoff.fence != null) {
+				int status = glClientWaitSync(handoff.fence, 0, 0);
+				if (status == GL_TIMEOUT_EXPIRED) {
+					blockedThreads.add(handoff.thread);
+					i++;
+					continue;
+				}
+				glDeleteSync(handoff.fence);
+				if (status == GL_WAIT_FAILED) {
+					pendingHandoffs.removeIndex(i);
+					throw new GdxRuntimeException("Waiting on the fence of a handoff failed.");
 				}
 			}
+			pendingHandoffs.removeIndex(i);
+			handoff.runnable.run();
+			ran = true;
 		}
-		Display.setInitialBackground(config.initialBackgroundColor.r, config.initialBackgroundColor.g,
-			config.initialBackgroundColor.b);
+		return ran;
+	}
 
-		if (config.x != -1 && config.y != -1) Display.setLocation(config.x, config.y);
-		createDisplayPixelFormat();
-		config.x = Display.getX();
-		config.y = Display.getY();
-		initiateGLInstances();
+	/** @return whether runnables wait for their fences, the render loop has to poll them */
+	boolean hasPendingFences () {
+		return pendingHandoffs.size > 0;
 	}
 
-	private void createDisplayPixelFormat () {
-		bufferFormat = new BufferFormat(config.r, config.g, config.b, config.a, config.depth, config.stencil, config.samples, false);
-		this.toFX = new LwjglToJavaFX(target);
+	static private final class Handoff {
+		final Thread thread = Thread.currentThread();
+		final GLSync fence;
+		final Runnable runnable;
+
+		Handoff (GLSync fence, Runnable runnable) {
+			this.fence = fence;
+			this.runnable = runnable;
+		}
 	}
-	
+
+	@Override
+	public void requestRendering () {
+		super.requestRendering();
+		wakeup.signal();
+	}
+
+	@Override
+	public void setContinuousRendering (boolean isContinuous) {
+		super.setContinuousRendering(isContinuous);
+		wakeup.signal();
+	}
+
 	@Override
 	public void setTitle(String title){
 		Platform.runLater(() -> ((Stage)target.getScene().getWindow()).setTitle(title));
@@ -0,0 +1,247 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.scene.image.ImageView;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** Runs several independent tools on the render thread and OpenGL context of one application, instead of one thread and one
+ * pbuffer per tool. Every tool is an {@link ApplicationListener} with its own ImageView, stream and {@link LwjglFXInput}. While
+ * a tool is called, {@link Gdx#input} is its input and {@link Gdx#graphics} reports the size of its view; the other statics
+ * are shared.
+ * <p>
+ * Each frame the tools are scheduled in this order: tools with input focus, tools that have not rendered for
+ * {@link #starvationTime}, then by priority and the time of their last frame. Focused tools render every frame. The others are
+ * throttled to the background FPS and only render while the estimated render time of the frame stays within the frame budget.
+ * Tools whose view cannot be seen are not rendered at all. The host stays in the foreground while any tool can be seen, even if
+ * the main view is hidden. */
+public class LwjglFXHost extends LwjglFXApplication {
+	/** Time after which a tool that was skipped for the frame budget is scheduled before all others. */
+	static public long starvationTime = 1000000000;
+
+	public LwjglFXHost (ApplicationListener listener, ImageView target) {
+		this(listener, target, new LwjglApplicationConfiguration());
+	}
+
+	/** @param listener renders the main view, it may do nothing but has to exist */
+	public LwjglFXHost (ApplicationListener listener, ImageView target, LwjglApplicationConfiguration config) {
+		// The main loop starts in the super constructor, so the scheduler has to exist before
+		super(new Scheduler(listener, config), target, config);
+	}
+
+	/** Adds a tool rendered into the given view. Its {@link ApplicationListener#create()} is called before its first frame.
+	 * Must be called on the JavaFX thread. The view may be added to a scene later, its input follows it.
+	 * @param priority tools with higher priorities are scheduled first */
+	public void addTool (String name, ApplicationListener tool, ImageView view, int priority) {
+		Scheduler scheduler = (Scheduler)listener;
+		LwjglFXInput input = new LwjglFXInput(view);
+		input.wakeup = ((LwjglFXGraphics)graphics).wakeup;
+		// Tool input is only processed while the host renders, so an event has to request that frame
+		input.renderOnEvent = true;
+		Tool t = new Tool(name, tool, view, input, priority);
+		postRunnable(() -> {
+			if (scheduler.tools.containsKey(name)) throw new GdxRuntimeException("A tool with this name exists already: " + name);
+			scheduler.tools.put(name, t);
+		});
+		addView(name, view);
+	}
+
+	/** Pauses and disposes the tool and destroys the stream of its view. */
+	public void removeTool (String name) {
+		Scheduler scheduler = (Scheduler)listener;
+		postRunnable(() -> {
+			Tool tool = scheduler.tools.remove(name);
+			if (tool != null && tool.created) scheduler.call(tool, () -> {
+				tool.listener.pause();
+				tool.listener.dispose();
+			});
+		});
+		removeView(name);
+	}
+
+	public void setToolPriority (String name, int priority) {
+		Scheduler scheduler = (Scheduler)listener;
+		postRunnable(() -> {
+			Tool tool = scheduler.tools.get(name);
+			if (tool != null) tool.priority = priority;
+		});
+	}
+
+	/** Sets the time per frame the tools without focus may take together. A non-positive value uses the frame time of the
+	 * foreground FPS. */
+	public void setFrameBudget (long nanos) {
+		((Scheduler)listener).frameBudget = nanos;
+	}
+
+	/** @return the average render time of the tool in nanoseconds, or -1 if there is no such tool. Must be called on the render
+	 *         thread. */
+	public long getToolRenderTime (String name) {
+		Tool tool = ((Scheduler)listener).tools.get(name);
+		return tool == null ? -1 : tool.renderTime;
+	}
+
+	static final class Tool {
+		final String name;
+		final ApplicationListener listener;
+		final ImageView view;
+		final LwjglFXInput input;
+		int priority;
+		boolean created;
+		int width, height;
+		long lastRender, renderTime;
+
+		Tool (String name, ApplicationListener listener, ImageView view, LwjglFXInput input, int priority) {
+			this.name = name;
+			this.listener = listener;
+			this.view = view;
+			this.input = input;
+			this.priority = priority;
+		}
+	}
+
+	/** The listener of the host application. Forwards the lifecycle of the main view to the host listener and of the other
+	 * views to their tools. All methods run on the render thread. */
+	static final class Scheduler implements LwjglFXViewListener {
+		final ApplicationListener main;
+		final LwjglApplicationConfiguration config;
+		final Map<String, Tool> tools = new LinkedHashMap<String, Tool>();
+		volatile long frameBudget;
+
+		private final List<Tool> order = new ArrayList<Tool>();
+		private final Set<Tool> scheduled = new HashSet<Tool>();
+		private long now;
+
+		private final Comparator<Tool> comparator = (a, b) -> {
+			if (a.input.hasFocus != b.input.hasFocus) return a.input.hasFocus ? -1 : 1;
+			boolean aStarving = now - a.lastRender > starvationTime, bStarving = now - b.lastRender > starvationTime;
+			if (aStarving != bStarving) return aStarving ? -1 : 1;
+			if (a.priority != b.priority) return b.priority - a.priority;
+			return Long.compare(a.lastRender, b.lastRender);
+		};
+
+		Scheduler (ApplicationListener main, LwjglApplicationConfiguration config) {
+			this.main = main;
+			this.config = config;
+		}
+
+		/** Picks the tools rendered in this frame. */
+		private void schedule () {
+			now = System.nanoTime();
+			scheduled.clear();
+			order.clear();
+			order.addAll(tools.values());
+			order.sort(comparator);
+
+			long budget = frameBudget;
+			if (budget <= 0) budget = 1000000000L / (config.foregroundFPS > 0 ? config.foregroundFPS : 60);
+			int backgroundFPS = config.backgroundFPS;
+			long spent = 0;
+			for (Tool tool : order) {
+				if (!tool.input.hasFocus) {
+					if (backgroundFPS == -1) continue;
+					if (backgroundFPS > 0 && now - tool.lastRender < 1000000000L / backgroundFPS) continue;
+					// Over budget, the tool moves up in the order until it gets its frame
+					if (spent + tool.renderTime > budget && !scheduled.isEmpty()) continue;
+				}
+				scheduled.add(tool);
+				spent += tool.renderTime;
+			}
+		}
+
+		/** Calls into the tool with its input installed as {@link Gdx#input} and {@link Gdx#graphics} reporting the size of its
+		 * view. */
+		void call (Tool tool, Runnable runnable) {
+			Input input = Gdx.input;
+			Gdx.input = tool.input;
+			LwjglFXGraphics graphics = (LwjglFXGraphics)Gdx.graphics;
+			graphics.setViewSize((int)tool.view.getFitWidth(), (int)tool.view.getFitHeight());
+			try {
+				runnable.run();
+			} finally {
+				graphics.setViewSize(-1, -1);
+				Gdx.input = input;
+			}
+		}
+
+		@Override
+		public void create () {
+			main.create();
+		}
+
+		@Override
+		public void resize (int width, int height) {
+			main.resize(width, height);
+		}
+
+		@Override
+		public void render () {
+			// Before scheduling, so that a tool that just gained focus renders in this frame
+			for (Tool tool : tools.values())
+				call(tool, () -> tool.input.processEvents());
+			schedule();
+			main.render();
+		}
+
+		@Override
+		public boolean shouldRenderView (String view) {
+			Tool tool = tools.get(view);
+			return tool != null && scheduled.contains(tool);
+		}
+
+		@Override
+		public void render (String view) {
+			Tool tool = tools.get(view);
+			if (tool == null) return;
+			call(tool, () -> {
+				if (!tool.created) {
+					tool.listener.create();
+					tool.created = true;
+				}
+				int width = (int)tool.view.getFitWidth(), height = (int)tool.view.getFitHeight();
+				if (width != tool.width || height != tool.height) {
+					tool.width = width;
+					tool.height = height;
+					tool.listener.resize(width, height);
+				}
+				long start = System.nanoTime();
+				tool.listener.render();
+				long duration = System.nanoTime() - start;
+				tool.renderTime = tool.lastRender == 0 ? duration : tool.renderTime + (duration - tool.renderTime) / 8;
+				tool.lastRender = start;
+			});
+			tool.input.frameRendered();
+		}
+
+		@Override
+		public void pause () {
+			main.pause();
+			for (Tool tool : tools.values())
+				if (tool.created) call(tool, () -> tool.listener.pause());
+		}
+
+		@Override
+		public void resume () {
+			main.resume();
+			for (Tool tool : tools.values())
+				if (tool.created) call(tool, () -> tool.listener.resume());
+		}
+
+		@Override
+		public void dispose () {
+			for (Tool tool : tools.values())
+				if (tool.created) call(tool, () -> tool.listener.dispose());
+			tools.clear();
+			main.dispose();
+		}
+	}
+}
@@ -16,18 +16,34 @@
 
 package com.badlogic.gdx.backends.lwjgl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.Cursor;
+import javafx.scene.ImageCursor;
+import javafx.scene.Scene;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 
+import org.lwjgl.util.stream.PixelKernels;
+
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.Input;
@@ -58,6 +74,16 @@ final public class LwjglFXInput implements Input {
 	KeyCode lastKeyCode;
 	MouseButton lastButton;
 	boolean isPressed, hasFocus = false;
+	int frame, recordStartFrame, replayStartFrame;
+	LwjglFXInputRecorder recorder;
+	LwjglFXInputReplayer replayer;
+	volatile boolean replaying;
+	LwjglFXWakeup wakeup;
+	/** Whether an event requests a frame, for inputs that are only processed while rendering. */
+	volatile boolean renderOnEvent;
+	PointerHistory pointerHistory = new PointerHistory(), pendingPointerHistory = new PointerHistory();
+	final Object pointerHistoryLock = new Object();
+	final Map<Pixmap, ImageCursor> cursors = new WeakHashMap<Pixmap, ImageCursor>();
 
 	Pool<KeyEvent> usedKeyEvents = new Pool<KeyEvent>(16, 1000) {
 		protected KeyEvent newObject () {
@@ -71,49 +97,65 @@ final public class LwjglFXInput implements Input {
 		}
 	};
 
+	private final EventHandler<javafx.scene.input.KeyEvent> keyPressedHandler = e -> {
+		if(!hasFocus || replaying) return;
+		lastKeyCode = e.getCode();
+		int keyCode = getGdxKeyCode(lastKeyCode);
+		char keyChar = e.getText().charAt(0);
+		long timeStamp = System.nanoTime();
+		KeyEvent event = usedKeyEvents.obtain();
+		event.keyCode = keyCode;
+		event.keyChar = 0;
+		event.type = KeyEvent.KEY_DOWN;
+		event.timeStamp = timeStamp;
+		keyEvents.add(event);
+
+		event = usedKeyEvents.obtain();
+		event.keyCode = 0;
+		event.keyChar = keyChar;
+		event.type = KeyEvent.KEY_TYPED;
+		event.timeStamp = timeStamp;
+		keyEvents.add(event);
+
+		pressedKeys++;
+		lastKeyCharPressed = keyChar;
+		keyRepeatTimer = keyRepeatInitialTime;
+		wake();
+	};
+
+	private final EventHandler<javafx.scene.input.KeyEvent> keyReleasedHandler = e -> {
+		if(!hasFocus || replaying) return;
+		lastKeyCode = null;
+		int keyCode = getGdxKeyCode(e.getCode());
+		KeyEvent event = usedKeyEvents.obtain();
+		event.keyCode = keyCode;
+		event.keyChar = 0;
+		event.type = KeyEvent.KEY_UP;
+		event.timeStamp = System.nanoTime();
+		keyEvents.add(event);
+		pressedKeys--;
+		lastKeyCharPressed = 0;
+		wake();
+	};
+
 	public LwjglFXInput (ImageView target) {
 		this.target = target;
-		this.target.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> lastButton = e.getButton());
-		this.target.getScene().addEventHandler(javafx.scene.input.KeyEvent.KEY_PRESSED, e ->{
-			if(!hasFocus) return;
-			lastKeyCode = e.getCode();
-			int keyCode = getGdxKeyCode(lastKeyCode);
-			char keyChar = e.getText().charAt(0);
-			long timeStamp = System.nanoTime();
-			KeyEvent event = usedKeyEvents.obtain();
-			event.keyCode = keyCode;
-			event.keyChar = 0;
-			event.type = KeyEvent.KEY_DOWN;
-			event.timeStamp = timeStamp;
-			keyEvents.add(event);
-
-			event = usedKeyEvents.obtain();
-			event.keyCode = 0;
-			event.keyChar = keyChar;
-			event.type = KeyEvent.KEY_TYPED;
-			event.timeStamp = timeStamp;
-			keyEvents.add(event);
-
-			pressedKeys++;
-			lastKeyCharPressed = keyChar;
-			keyRepeatTimer = keyRepeatInitialTime;
+		this.target.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+			if(!replaying) lastButton = e.getButton();
 		});
-		this.target.getScene().addEventHandler(javafx.scene.input.KeyEvent.KEY_RELEASED, e ->{
-			if(!hasFocus) return;
-			lastKeyCode = null;
-			int keyCode = getGdxKeyCode(e.getCode());
-			KeyEvent event = usedKeyEvents.obtain();
-			event.keyCode = keyCode;
-			event.keyChar = 0;
-			event.type = KeyEvent.KEY_UP;
-			event.timeStamp = System.nanoTime();
-			keyEvents.add(event);
-			pressedKeys--;
-			lastKeyCharPressed = 0;
+		// Key events are taken from the scene, which may be set after the input was created
+		if (target.getScene() != null) attachScene(target.getScene());
+		target.sceneProperty().addListener((o, oldScene, newScene) -> {
+			if (oldScene != null) {
+				oldScene.removeEventHandler(javafx.scene.input.KeyEvent.KEY_PRESSED, keyPressedHandler);
+				oldScene.removeEventHandler(javafx.scene.input.KeyEvent.KEY_RELEASED, keyReleasedHandler);
+			}
+			if (newScene != null) attachScene(newScene);
 		});
 		
 		
 		this.target.addEventHandler(MouseEvent.ANY, e -> {
+			if(replaying) return;
 			TouchEvent event = usedTouchEvents.obtain();
 			event.x = (int) e.getX();
 			event.y = (int) e.getY();
@@ -134,14 +176,19 @@ final public class LwjglFXInput implements Input {
 				pressedButtons.remove(event.button);
 			} else return;
 			touchEvents.add(event);
+			synchronized (pointerHistoryLock) {
+				pendingPointerHistory.add(event.x, event.y, toGdxButtons(e), event.timeStamp);
+			}
 			lastX = mouseX;
 			lastY = mouseY;
 			mouseX = event.x;
 			mouseY = event.y;
+			wake();
 		});
 		
 		
 		this.target.addEventHandler(ScrollEvent.SCROLL, e -> {
+			if(replaying) return;
 			TouchEvent event = usedTouchEvents.obtain();
 			event.x = (int) e.getX();
 			event.y = (int) e.getY();
@@ -149,9 +196,25 @@ final public class LwjglFXInput implements Input {
 			event.type = TouchEvent.TOUCH_SCROLLED;
 			event.scrollAmount = (int)-Math.signum(e.getDeltaY());
 			touchEvents.add(event);
+			wake();
 		});
 	}
 
+	private void attachScene (Scene scene) {
+		scene.addEventHandler(javafx.scene.input.KeyEvent.KEY_PRESSED, keyPressedHandler);
+		scene.addEventHandler(javafx.scene.input.KeyEvent.KEY_RELEASED, keyReleasedHandler);
+	}
+
+	private void wake () {
+		if (renderOnEvent && Gdx.graphics != null) {
+			// Signals the wakeup as well
+			Gdx.graphics.requestRendering();
+			return;
+		}
+		LwjglFXWakeup wakeup = this.wakeup;
+		if (wakeup != null) wakeup.signal();
+	}
+
 	public float getAccelerometerX () {
 		return 0;
 	}
@@ -192,6 +255,7 @@ final public class LwjglFXInput implements Input {
 	}
 
 	public boolean isTouched () {
+		if (replaying) return !pressedButtons.isEmpty();
 		return target.isPressed();
 	}
 
@@ -237,8 +301,24 @@ final public class LwjglFXInput implements Input {
 				target.requestFocus();
 			});
 		}
-		if(!isPressed && hasFocus && target.getScene().getRoot().isPressed()) hasFocus = false;
+		Scene scene = target.getScene();
+		if(!isPressed && hasFocus && scene != null && scene.getRoot().isPressed()) hasFocus = false;
 		synchronized (this) {
+			synchronized (pointerHistoryLock) {
+				PointerHistory history = pointerHistory;
+				pointerHistory = pendingPointerHistory;
+				pendingPointerHistory = history;
+				pendingPointerHistory.clear();
+			}
+			if (replayer != null)
+				replayEvents();
+			else if (recorder != null) recordEvents();
+			// A replay has to keep the loop rendering, its events are only delivered here
+			if (replaying) Gdx.graphics.requestRendering();
+
+			// Like the LWJGL backend, input triggers a frame when rendering is not continuous
+			if (keyEvents.size() > 0 || touchEvents.size() > 0) Gdx.graphics.requestRendering();
+
 			if (processor != null) {
 				InputProcessor processor = this.processor;
 				int len = keyEvents.size();
@@ -298,10 +378,143 @@ final public class LwjglFXInput implements Input {
 			deltaY = mouseY - lastY;
 			lastX = mouseX;
 			lastY = mouseY;
-			
 		}
 	}
 
+	/** Called by the render loop after every rendered frame. Recordings and replays count these frames, so iterations of the
+	 * loop that render nothing do not shift the timing of a replay. */
+	synchronized void frameRendered () {
+		frame++;
+	}
+
+	/** Starts writing every event entering {@link #processEvents()} to the given stream, tagged with its frame and a timestamp
+	 * relative to the first recorded event. The stream is closed by {@link #stopRecording()}. */
+	public synchronized void startRecording (OutputStream out) {
+		stopRecording();
+		try {
+			recorder = new LwjglFXInputRecorder(out);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't start input recording", e);
+		}
+		recordStartFrame = frame;
+	}
+
+	public synchronized void stopRecording () {
+		if (recorder == null) return;
+		try {
+			recorder.finish(frame - recordStartFrame);
+			recorder.close();
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't finish input recording", e);
+		} finally {
+			recorder = null;
+		}
+	}
+
+	public synchronized boolean isRecording () {
+		return recorder != null;
+	}
+
+	/** Replays a recording made with {@link #startRecording(OutputStream)}. Each event is delivered at the same frame relative
+	 * to the start of the replay as it was recorded at. Events coming from JavaFX are ignored while the replay runs, so the
+	 * window does not need the focus. The stream is closed once the replay has finished or {@link #stopReplay()} is called. */
+	public synchronized void startReplay (InputStream in) {
+		stopReplay();
+		try {
+			replayer = new LwjglFXInputReplayer(in);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't start input replay", e);
+		}
+		replayStartFrame = frame;
+		pressedButtons.clear();
+		pressedKeys = 0;
+		lastKeyCode = null;
+		replaying = true;
+		// The render loop may be parked while rendering is not continuous
+		if (Gdx.graphics != null) Gdx.graphics.requestRendering();
+		wake();
+	}
+
+	public synchronized void stopReplay () {
+		if (replayer == null) return;
+		replaying = false;
+		pressedButtons.clear();
+		pressedKeys = 0;
+		lastKeyCode = null;
+		try {
+			replayer.close();
+		} catch (IOException e) {
+			// ignore, we only read from it
+		} finally {
+			replayer = null;
+		}
+	}
+
+	public boolean isReplaying () {
+		return replaying;
+	}
+
+	private void recordEvents () {
+		int recordFrame = frame - recordStartFrame;
+		try {
+			for (int i = 0, n = keyEvents.size(); i < n; i++)
+				recorder.recordKey(recordFrame, keyEvents.get(i));
+			for (int i = 0, n = touchEvents.size(); i < n; i++)
+				recorder.recordTouch(recordFrame, touchEvents.get(i));
+		} catch (IOException e) {
+			recorder = null;
+			throw new GdxRuntimeException("Couldn't write input recording", e);
+		}
+	}
+
+	private void replayEvents () {
+		// Live events slipped in before the replay started
+		for (int i = 0, n = keyEvents.size(); i < n; i++)
+			usedKeyEvents.free(keyEvents.get(i));
+		for (int i = 0, n = touchEvents.size(); i < n; i++)
+			usedTouchEvents.free(touchEvents.get(i));
+		keyEvents.clear();
+		touchEvents.clear();
+
+		boolean running;
+		try {
+			running = replayer.inject(frame - replayStartFrame, this);
+		} catch (IOException e) {
+			stopReplay();
+			throw new GdxRuntimeException("Couldn't read input recording", e);
+		}
+
+		// Mirror what the JavaFX handlers do to the polled state
+		justTouched = false;
+		for (int i = 0, n = keyEvents.size(); i < n; i++) {
+			KeyEvent e = keyEvents.get(i);
+			if (e.type == KeyEvent.KEY_DOWN) {
+				pressedKeys++;
+				lastKeyCode = getFXKeyCode(e.keyCode);
+			} else if (e.type == KeyEvent.KEY_UP) {
+				pressedKeys--;
+				lastKeyCode = null;
+			}
+		}
+		for (int i = 0, n = touchEvents.size(); i < n; i++) {
+			TouchEvent e = touchEvents.get(i);
+			if (e.type == TouchEvent.TOUCH_SCROLLED) continue;
+			if (e.type == TouchEvent.TOUCH_DOWN) {
+				pressedButtons.add(e.button);
+				lastButton = toLwjglButton(e.button);
+				justTouched = true;
+			} else if (e.type == TouchEvent.TOUCH_UP) pressedButtons.remove(e.button);
+			mouseX = e.x;
+			mouseY = e.y;
+			int buttons = 0;
+			for (int button : pressedButtons)
+				buttons |= 1 << button;
+			pointerHistory.add(e.x, e.y, buttons, e.timeStamp);
+		}
+
+		if (!running) stopReplay();
+	}
+
 	public static int getGdxKeyCode (KeyCode code) {
 		if(code == null) return Keys.UNKNOWN;
 		switch (code) {
@@ -726,6 +939,22 @@ final public class LwjglFXInput implements Input {
 		return justTouched;
 	}
 
+	/** @return a bit mask with the bit of every pressed {@link Buttons} constant set */
+	public static int toGdxButtons (MouseEvent e) {
+		int buttons = 0;
+		if (e.isPrimaryButtonDown()) buttons |= 1 << Buttons.LEFT;
+		if (e.isSecondaryButtonDown()) buttons |= 1 << Buttons.RIGHT;
+		if (e.isMiddleButtonDown()) buttons |= 1 << Buttons.MIDDLE;
+		return buttons;
+	}
+
+	/** Returns every pointer sample JavaFX delivered since the previous frame, in the order they arrived. Unlike
+	 * {@link #getX()} and {@link #getDeltaX()}, this keeps the samples in between, so strokes can be interpolated correctly at
+	 * low frame rates. The returned instance is reused and only valid until the next frame. */
+	public PointerHistory getPointerHistory () {
+		return pointerHistory;
+	}
+
 	public static MouseButton toLwjglButton (int button) {
 		switch (button) {
 		case Buttons.LEFT:
@@ -740,6 +969,7 @@ final public class LwjglFXInput implements Input {
 
 	@Override
 	public boolean isButtonPressed (int button) {
+		if (replaying) return pressedButtons.contains(button);
 		return target.isPressed() && lastButton == toLwjglButton(button);
 	}
 
@@ -823,10 +1053,62 @@ final public class LwjglFXInput implements Input {
 		//TODO
 	}
 
-  @Override
-  public void setCursorImage(Pixmap pixmap, int xHotspot, int yHotspot) {
-	  throw new GdxRuntimeException("Not supported yet!");
-  }
+	/** Sets a JavaFX {@link ImageCursor} created from the given pixmap on the target view. The cursor is drawn by the OS, so it
+	 * is not delayed by the render and read back pipeline. Cursors are cached per pixmap instance, call
+	 * {@link #clearCursorCache()} after modifying a pixmap which was used before.
+	 * @param pixmap the cursor image, or null to restore the default cursor */
+	@Override
+	public void setCursorImage (Pixmap pixmap, int xHotspot, int yHotspot) {
+		if (pixmap == null) {
+			setSystemCursor(Cursor.DEFAULT);
+			return;
+		}
+		ImageCursor cursor;
+		synchronized (cursors) {
+			cursor = cursors.get(pixmap);
+			if (cursor == null || cursor.getHotspotX() != xHotspot || cursor.getHotspotY() != yHotspot) {
+				cursor = new ImageCursor(toFXImage(pixmap), xHotspot, yHotspot);
+				cursors.put(pixmap, cursor);
+			}
+		}
+		setSystemCursor(cursor);
+	}
+
+	/** Sets one of the JavaFX cursors, e.g. {@link Cursor#CROSSHAIR}, on the target view. */
+	public void setSystemCursor (Cursor cursor) {
+		if (Platform.isFxApplicationThread())
+			target.setCursor(cursor);
+		else
+			Platform.runLater(() -> target.setCursor(cursor));
+	}
+
+	public void clearCursorCache () {
+		synchronized (cursors) {
+			cursors.clear();
+		}
+	}
+
+	static WritableImage toFXImage (Pixmap pixmap) {
+		int width = pixmap.getWidth(), height = pixmap.getHeight();
+		if (pixmap.getFormat() == Pixmap.Format.RGBA8888) {
+			// Swapping red and blue turns RGBA into BGRA, which the writer takes as is
+			ByteBuffer bgra = ByteBuffer.allocateDirect(width * height * 4);
+			PixelKernels.swizzle(pixmap.getPixels(), width * 4, bgra, width * 4, width, height);
+			WritableImage image = new WritableImage(width, height);
+			image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), bgra, width * 4);
+			return image;
+		}
+		int[] argb = new int[width * height];
+		for (int y = 0, i = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, i++) {
+				int rgba = pixmap.getPixel(x, y);
+				argb[i] = (rgba >>> 8) | (rgba << 24);
+			}
+		}
+		WritableImage image = new WritableImage(width, height);
+		image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+		return image;
+	}
 
   @Override
 	public void setCatchMenuKey (boolean catchMenu) {
@@ -843,6 +1125,55 @@ final public class LwjglFXInput implements Input {
 
 	}
 
+	/** Pointer samples of one frame, stored in primitive arrays which are reused from frame to frame. */
+	public static final class PointerHistory {
+		int[] x = new int[64], y = new int[64], buttons = new int[64];
+		long[] time = new long[64];
+		int size;
+
+		void add (int x, int y, int buttons, long time) {
+			if (size == this.x.length) {
+				int capacity = size << 1;
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.y = Arrays.copyOf(this.y, capacity);
+				this.buttons = Arrays.copyOf(this.buttons, capacity);
+				this.time = Arrays.copyOf(this.time, capacity);
+			}
+			this.x[size] = x;
+			this.y[size] = y;
+			this.buttons[size] = buttons;
+			this.time[size] = time;
+			size++;
+		}
+
+		void clear () {
+			size = 0;
+		}
+
+		public int size () {
+			return size;
+		}
+
+		public int getX (int index) {
+			return x[index];
+		}
+
+		public int getY (int index) {
+			return y[index];
+		}
+
+		/** @return the pressed buttons as a bit mask, see {@link LwjglFXInput#toGdxButtons(MouseEvent)}. JavaFX reports no
+		 *         pen pressure for mouse events. */
+		public int getButtons (int index) {
+			return buttons[index];
+		}
+
+		/** @return the {@link System#nanoTime()} the sample was taken at */
+		public long getTime (int index) {
+			return time[index];
+		}
+	}
+
 	class KeyEvent {
 		static final int KEY_DOWN = 0;
 		static final int KEY_UP = 1;
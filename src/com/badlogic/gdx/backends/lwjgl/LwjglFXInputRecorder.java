@@ -0,0 +1,91 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.badlogic.gdx.backends.lwjgl.LwjglFXInput.KeyEvent;
+import com.badlogic.gdx.backends.lwjgl.LwjglFXInput.TouchEvent;
+
+/** Writes the events entering {@link LwjglFXInput#processEvents()} to a compact binary stream, which can be fed back with
+ * {@link LwjglFXInputReplayer}.
+ * <p>
+ * Every record starts with a tag byte (kind in the high nibble, event type in the low nibble), followed by the frame and the
+ * timestamp as variable length deltas to the previous record. Timestamps are stored in microseconds. */
+final class LwjglFXInputRecorder implements Closeable {
+	static final int MAGIC = 0x47465849; // "GFXI"
+	static final int VERSION = 1;
+
+	static final int KIND_KEY = 0x10;
+	static final int KIND_TOUCH = 0x20;
+	static final int KIND_END = 0xF0;
+
+	private final DataOutputStream out;
+	private long startTime = -1;
+	private int lastFrame;
+	private long lastMicros;
+
+	LwjglFXInputRecorder (OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+	}
+
+	void recordKey (int frame, KeyEvent e) throws IOException {
+		writeHeader(KIND_KEY | e.type, frame, e.timeStamp);
+		writeVarInt(e.keyCode);
+		writeVarInt(e.keyChar);
+	}
+
+	void recordTouch (int frame, TouchEvent e) throws IOException {
+		writeHeader(KIND_TOUCH | e.type, frame, e.timeStamp);
+		writeVarInt(zigZag(e.x));
+		writeVarInt(zigZag(e.y));
+		out.writeByte(e.button);
+		if (e.type == TouchEvent.TOUCH_SCROLLED) writeVarInt(zigZag(e.scrollAmount));
+	}
+
+	/** Writes the end marker, so the replay lasts until the frame the recording was stopped at. */
+	void finish (int frame) throws IOException {
+		out.writeByte(KIND_END);
+		writeVarInt(Math.max(0, frame - lastFrame));
+		out.flush();
+	}
+
+	private void writeHeader (int tag, int frame, long timeStamp) throws IOException {
+		if (startTime == -1) startTime = timeStamp;
+		long micros = Math.max(lastMicros, (timeStamp - startTime) / 1000);
+		out.writeByte(tag);
+		writeVarInt(frame - lastFrame);
+		writeVarLong(micros - lastMicros);
+		lastFrame = frame;
+		lastMicros = micros;
+	}
+
+	private void writeVarInt (int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private void writeVarLong (long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static int zigZag (int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	@Override
+	public void close () throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,108 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.badlogic.gdx.backends.lwjgl.LwjglFXInput.KeyEvent;
+import com.badlogic.gdx.backends.lwjgl.LwjglFXInput.TouchEvent;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** Reads a stream written by {@link LwjglFXInputRecorder} and hands the events back to {@link LwjglFXInput} at the frames
+ * they were recorded at. Timestamps are rebased onto the time the replay started. */
+final class LwjglFXInputReplayer implements Closeable {
+	private final DataInputStream in;
+	private final long startTime;
+
+	/** The record read ahead, which belongs to a later frame. */
+	private int tag = -1;
+	private int frame;
+	private long micros;
+	private boolean finished;
+
+	LwjglFXInputReplayer (InputStream in) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		if (this.in.readInt() != LwjglFXInputRecorder.MAGIC) throw new GdxRuntimeException("Not an input recording");
+		int version = this.in.readByte();
+		if (version != LwjglFXInputRecorder.VERSION) throw new GdxRuntimeException("Unsupported input recording version: " + version);
+		startTime = System.nanoTime();
+		readHeader();
+	}
+
+	/** Adds all events recorded for the given frame to the queues of the given input.
+	 * @return false once the end of the recording has been reached */
+	boolean inject (int currentFrame, LwjglFXInput input) throws IOException {
+		while (!finished && frame <= currentFrame) {
+			int kind = tag & 0xF0;
+			int type = tag & 0x0F;
+			if (kind == LwjglFXInputRecorder.KIND_END) {
+				finished = true;
+				break;
+			}
+			long timeStamp = startTime + micros * 1000;
+			if (kind == LwjglFXInputRecorder.KIND_KEY) {
+				KeyEvent event = input.usedKeyEvents.obtain();
+				event.type = type;
+				event.keyCode = readVarInt();
+				event.keyChar = (char)readVarInt();
+				event.timeStamp = timeStamp;
+				input.keyEvents.add(event);
+			} else if (kind == LwjglFXInputRecorder.KIND_TOUCH) {
+				TouchEvent event = input.usedTouchEvents.obtain();
+				event.type = type;
+				event.x = unZigZag(readVarInt());
+				event.y = unZigZag(readVarInt());
+				event.button = in.readByte();
+				event.pointer = 0;
+				event.scrollAmount = type == TouchEvent.TOUCH_SCROLLED ? unZigZag(readVarInt()) : 0;
+				event.timeStamp = timeStamp;
+				input.touchEvents.add(event);
+			} else
+				throw new GdxRuntimeException("Corrupt input recording, unknown tag: " + tag);
+			readHeader();
+		}
+		return !finished;
+	}
+
+	private void readHeader () throws IOException {
+		try {
+			tag = in.readUnsignedByte();
+		} catch (EOFException e) {
+			// Recording was not stopped cleanly, end after the last event
+			finished = true;
+			return;
+		}
+		frame += readVarInt();
+		if (tag != LwjglFXInputRecorder.KIND_END) micros += readVarLong();
+	}
+
+	private int readVarInt () throws IOException {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+
+	private long readVarLong () throws IOException {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+
+	private static int unZigZag (int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@Override
+	public void close () throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,282 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.InflaterInputStream;
+
+import org.lwjgl.util.stream.PixelDecoder;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** Decodes PNG files row by row straight into the mapped buffer of a {@link org.lwjgl.util.stream.StreamTextureLoader}. Only the
+ * header is read when the decoder is created, the file is read, inflated and unfiltered on a decoder thread, holding no more
+ * than two rows on the heap. The texture matches one loaded from a {@link com.badlogic.gdx.graphics.Pixmap}: straight alpha,
+ * top row first.
+ * <p>
+ * All color types and bit depths are supported, 16 bit samples are reduced to 8 bits. Interlaced files are not supported. */
+public class LwjglFXPngDecoder implements PixelDecoder {
+	private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+	private static final int IHDR = 0x49484452, PLTE = 0x504C5445, TRNS = 0x74524E53, IDAT = 0x49444154, IEND = 0x49454E44;
+
+	private static final int GRAY = 0, RGB = 2, PALETTE = 3, GRAY_ALPHA = 4, RGBA = 6;
+
+	private final FileHandle file;
+	private final int width, height, bitDepth, colorType, channels;
+
+	/** @throws GdxRuntimeException if the file is no PNG file, or is interlaced */
+	public LwjglFXPngDecoder (FileHandle file) {
+		this.file = file;
+		try (DataInputStream in = new DataInputStream(file.read())) {
+			if (in.readLong() != SIGNATURE) throw new GdxRuntimeException("Not a PNG file: " + file);
+			in.readInt(); // Length of the chunk
+			if (in.readInt() != IHDR) throw new GdxRuntimeException("Missing PNG header: " + file);
+			width = in.readInt();
+			height = in.readInt();
+			bitDepth = in.readUnsignedByte();
+			colorType = in.readUnsignedByte();
+			in.readUnsignedByte(); // Compression method
+			in.readUnsignedByte(); // Filter method
+			if (in.readUnsignedByte() != 0) throw new GdxRuntimeException("Interlaced PNG files are not supported: " + file);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't read the PNG header: " + file, e);
+		}
+
+		switch (colorType) {
+		case GRAY:
+			channels = 1;
+			break;
+		case RGB:
+			channels = 3;
+			break;
+		case PALETTE:
+			channels = 1;
+			break;
+		case GRAY_ALPHA:
+			channels = 2;
+			break;
+		case RGBA:
+			channels = 4;
+			break;
+		default:
+			throw new GdxRuntimeException("Invalid PNG color type " + colorType + ": " + file);
+		}
+		boolean valid = bitDepth == 8 || (bitDepth == 16 && colorType != PALETTE)
+			|| ((bitDepth == 1 || bitDepth == 2 || bitDepth == 4) && (colorType == GRAY || colorType == PALETTE));
+		if (!valid) throw new GdxRuntimeException("Invalid PNG bit depth " + bitDepth + ": " + file);
+	}
+
+	public FileHandle getFile () {
+		return file;
+	}
+
+	@Override
+	public int getWidth () {
+		return width;
+	}
+
+	@Override
+	public int getHeight () {
+		return height;
+	}
+
+	@Override
+	public void decode (ByteBuffer data, int stride) throws IOException {
+		int[] palette = null;
+		int transparent = -1, transparentG = -1, transparentB = -1;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.read(), 16384))) {
+			in.readLong(); // Signature, checked by the constructor
+			int length, type;
+			while ((type = readChunk(in, length = in.readInt())) != IDAT) {
+				if (type == IEND) throw new IOException("No image data in " + file);
+				if (type == PLTE) {
+					palette = new int[length / 3];
+					for (int i = 0; i < palette.length; i++)
+						palette[i] = 0xFF000000 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+					skipFully(in, length - palette.length * 3);
+				} else if (type == TRNS && colorType == PALETTE && palette != null) {
+					for (int i = 0; i < length; i++) {
+						int alpha = in.readUnsignedByte();
+						if (i < palette.length) palette[i] = alpha << 24 | palette[i] & 0xFFFFFF;
+					}
+				} else if (type == TRNS && colorType == GRAY && length >= 2) {
+					transparent = in.readUnsignedShort();
+					skipFully(in, length - 2);
+				} else if (type == TRNS && colorType == RGB && length >= 6) {
+					transparent = in.readUnsignedShort();
+					transparentG = in.readUnsignedShort();
+					transparentB = in.readUnsignedShort();
+					skipFully(in, length - 6);
+				} else
+					skipFully(in, length);
+				in.readInt(); // CRC
+			}
+			if (colorType == PALETTE && palette == null) throw new IOException("Missing PNG palette: " + file);
+
+			int bytesPerPixel = Math.max(1, channels * bitDepth / 8);
+			int rowBytes = (width * channels * bitDepth + 7) / 8;
+			byte[] row = new byte[rowBytes], previous = new byte[rowBytes];
+			ByteBuffer bgra = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+			try (DataInputStream pixels = new DataInputStream(new InflaterInputStream(new IdatInputStream(in, length)))) {
+				for (int y = 0; y < height; y++) {
+					int filter = pixels.readUnsignedByte();
+					pixels.readFully(row);
+					unfilter(filter, row, previous, bytesPerPixel);
+
+					int offset = y * stride;
+					for (int x = 0; x < width; x++, offset += 4)
+						bgra.putInt(offset, getPixel(row, x, palette, transparent, transparentG, transparentB));
+
+					byte[] swap = row;
+					row = previous;
+					previous = swap;
+				}
+			}
+		}
+	}
+
+	/** @return the type of the chunk whose length was just read */
+	private static int readChunk (DataInputStream in, int length) throws IOException {
+		if (length < 0) throw new IOException("Invalid PNG chunk length: " + length);
+		return in.readInt();
+	}
+
+	private static void skipFully (DataInputStream in, int bytes) throws IOException {
+		while (bytes > 0) {
+			int skipped = in.skipBytes(bytes);
+			if (skipped <= 0) {
+				if (in.read() == -1) throw new EOFException();
+				skipped = 1;
+			}
+			bytes -= skipped;
+		}
+	}
+
+	private static void unfilter (int filter, byte[] row, byte[] previous, int bpp) throws IOException {
+		int length = row.length;
+		switch (filter) {
+		case 0: // None
+			break;
+		case 1: // Sub
+			for (int i = bpp; i < length; i++)
+				row[i] += row[i - bpp];
+			break;
+		case 2: // Up
+			for (int i = 0; i < length; i++)
+				row[i] += previous[i];
+			break;
+		case 3: // Average
+			for (int i = 0; i < length; i++) {
+				int left = i < bpp ? 0 : row[i - bpp] & 0xFF;
+				row[i] += (left + (previous[i] & 0xFF)) >>> 1;
+			}
+			break;
+		case 4: // Paeth
+			for (int i = 0; i < length; i++) {
+				int a = i < bpp ? 0 : row[i - bpp] & 0xFF, b = previous[i] & 0xFF, c = i < bpp ? 0 : previous[i - bpp] & 0xFF;
+				int p = a + b - c, pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+				row[i] += pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+			}
+			break;
+		default:
+			throw new IOException("Invalid PNG filter: " + filter);
+		}
+	}
+
+	/** @return the pixel as BGRA in a little endian int, that is ARGB */
+	private int getPixel (byte[] row, int x, int[] palette, int transparent, int transparentG, int transparentB) throws IOException {
+		int index = x * channels;
+		switch (colorType) {
+		case GRAY: {
+			int gray = getSample(row, index);
+			int alpha = gray == transparent ? 0 : 0xFF;
+			gray = to8Bits(gray);
+			return alpha << 24 | gray << 16 | gray << 8 | gray;
+		}
+		case RGB: {
+			int r = getSample(row, index), g = getSample(row, index + 1), b = getSample(row, index + 2);
+			int alpha = r == transparent && g == transparentG && b == transparentB ? 0 : 0xFF;
+			return alpha << 24 | to8Bits(r) << 16 | to8Bits(g) << 8 | to8Bits(b);
+		}
+		case PALETTE: {
+			int entry = getSample(row, index);
+			if (entry >= palette.length) throw new IOException("Invalid PNG palette index: " + entry);
+			return palette[entry];
+		}
+		case GRAY_ALPHA: {
+			int gray = to8Bits(getSample(row, index));
+			return to8Bits(getSample(row, index + 1)) << 24 | gray << 16 | gray << 8 | gray;
+		}
+		default:
+			return to8Bits(getSample(row, index + 3)) << 24 | to8Bits(getSample(row, index)) << 16
+				| to8Bits(getSample(row, index + 1)) << 8 | to8Bits(getSample(row, index + 2));
+		}
+	}
+
+	private int getSample (byte[] row, int index) {
+		switch (bitDepth) {
+		case 8:
+			return row[index] & 0xFF;
+		case 16:
+			return (row[index * 2] & 0xFF) << 8 | row[index * 2 + 1] & 0xFF;
+		default:
+			int bit = index * bitDepth;
+			return (row[bit >>> 3] >>> (8 - bitDepth - (bit & 7))) & ((1 << bitDepth) - 1);
+		}
+	}
+
+	private int to8Bits (int sample) {
+		switch (bitDepth) {
+		case 8:
+			return sample;
+		case 16:
+			return sample >>> 8;
+		default:
+			return colorType == PALETTE ? sample : sample * 0xFF / ((1 << bitDepth) - 1);
+		}
+	}
+
+	/** The data of consecutive IDAT chunks as one stream, the zlib stream of the image. */
+	static private final class IdatInputStream extends InputStream {
+		private final DataInputStream in;
+		private int remaining;
+		private boolean end;
+
+		IdatInputStream (DataInputStream in, int length) {
+			this.in = in;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read () throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read (byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			while (remaining == 0) {
+				if (end) return -1;
+				in.readInt(); // CRC
+				int length = in.readInt();
+				if (readChunk(in, length) != IDAT) {
+					end = true;
+					return -1;
+				}
+				remaining = length;
+			}
+			int read = in.read(b, off, Math.min(len, remaining));
+			if (read == -1) throw new EOFException();
+			remaining -= read;
+			return read;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import static org.lwjgl.opengl.ARBGetProgramBinary.GL_NUM_PROGRAM_BINARY_FORMATS;
+import static org.lwjgl.opengl.ARBGetProgramBinary.GL_PROGRAM_BINARY_LENGTH;
+import static org.lwjgl.opengl.ARBGetProgramBinary.glGetProgramBinary;
+import static org.lwjgl.opengl.ARBGetProgramBinary.glProgramBinary;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLContext;
+
+/** Stores linked programs on disk with ARB_get_program_binary, so shaders compiled in
+ * {@link com.badlogic.gdx.ApplicationListener#create()} are only compiled on the first start. Programs are keyed by a hash of
+ * their shader types and sources, attribute bindings and the vendor, renderer and version strings of the driver, so a driver
+ * update compiles them again. A binary the driver rejects is deleted and the program is compiled and linked from source as
+ * usual.
+ * <p>
+ * The cache is used by {@link com.badlogic.gdx.Gdx#gl20} transparently, it defers the compilation of each shader until its
+ * program is linked and no binary was found. It is enabled by default in {@link #directory}. The system property
+ * {@value #PROPERTY} sets another directory, or disables the cache if set to "false". It is not used if
+ * {@link LwjglApplicationConfiguration#useGL30} is set. */
+public class LwjglFXProgramCache {
+	public static final String PROPERTY = "gdx.fx.programCache";
+
+	private static final int MAGIC = 0x47445850;
+
+	/** The directory of the cache files, by default ".libgdx-fx/programs" in the home directory of the user. */
+	static public File directory = getDefaultDirectory();
+	static public boolean enabled = !"false".equals(System.getProperty(PROPERTY));
+
+	private final String driver;
+	private int hits, misses, rejected;
+
+	private LwjglFXProgramCache (String driver) {
+		this.driver = driver;
+	}
+
+	private static File getDefaultDirectory () {
+		String path = System.getProperty(PROPERTY);
+		if (path != null && !path.equals("false")) return new File(path);
+		return new File(System.getProperty("user.home"), ".libgdx-fx" + File.separator + "programs");
+	}
+
+	/** @return a cache for the current context, or null if it is disabled or the driver does not support program binaries */
+	static LwjglFXProgramCache create () {
+		if (!enabled || !GLContext.getCapabilities().GL_ARB_get_program_binary) return null;
+		if (GL11.glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) == 0) return null;
+		return new LwjglFXProgramCache(GL11.glGetString(GL11.GL_VENDOR) + "\n" + GL11.glGetString(GL11.GL_RENDERER) + "\n"
+			+ GL11.glGetString(GL11.GL_VERSION));
+	}
+
+	/** @return the key of a program with the given shader types and sources and attribute bindings */
+	String getKey (int[] types, String[] sources, String bindings) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(driver.getBytes(StandardCharsets.UTF_8));
+			for (int i = 0; i < sources.length; i++) {
+				// The same source may be attached as another stage
+				digest.update((byte)0);
+				digest.update((byte)(types[i] >>> 24));
+				digest.update((byte)(types[i] >>> 16));
+				digest.update((byte)(types[i] >>> 8));
+				digest.update((byte)types[i]);
+				digest.update(sources[i].getBytes(StandardCharsets.UTF_8));
+			}
+			digest.update((byte)0);
+			digest.update(bindings.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder(40);
+			for (byte b : digest.digest())
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	private File getFile (String key) {
+		return new File(directory, key + ".bin");
+	}
+
+	/** Loads the binary of the key into the program.
+	 * @return whether the program is linked, otherwise it has to be linked from source */
+	boolean load (int program, String key) {
+		File file = getFile(key);
+		int format;
+		ByteBuffer binary;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MAGIC) throw new IOException("Not a program binary.");
+			format = in.readInt();
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			if (in.readLong() != crc.getValue()) throw new IOException("Corrupt program binary.");
+			binary = BufferUtils.createByteBuffer(bytes.length);
+			binary.put(bytes).flip();
+		} catch (IOException e) {
+			if (file.exists()) reject(file);
+			misses++;
+			return false;
+		}
+
+		glProgramBinary(program, format, binary);
+		if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+			// Clear the error of an unsupported format, the program is linked from source next
+			GL11.glGetError();
+			reject(file);
+			misses++;
+			return false;
+		}
+		hits++;
+		return true;
+	}
+
+	private void reject (File file) {
+		file.delete();
+		rejected++;
+	}
+
+	/** Stores the binary of the linked program under the key. Failures are ignored, the program is compiled again next time. */
+	void store (int program, String key) {
+		int length = GL20.glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+		if (length <= 0) return;
+		IntBuffer lengthBuffer = BufferUtils.createIntBuffer(1), format = BufferUtils.createIntBuffer(1);
+		ByteBuffer binary = BufferUtils.createByteBuffer(length);
+		glGetProgramBinary(program, lengthBuffer, format, binary);
+		byte[] bytes = new byte[lengthBuffer.get(0)];
+		binary.get(bytes);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+
+		if (!directory.isDirectory() && !directory.mkdirs()) return;
+		File file = getFile(key), temp = new File(directory, key + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+			out.writeInt(MAGIC);
+			out.writeInt(format.get(0));
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.writeLong(crc.getValue());
+		} catch (IOException e) {
+			temp.delete();
+			return;
+		}
+		// Another instance may store the same program, the last one wins
+		file.delete();
+		if (!temp.renameTo(file)) temp.delete();
+	}
+
+	/** @return the number of programs loaded from the cache */
+	public int getHits () {
+		return hits;
+	}
+
+	/** @return the number of programs linked from source */
+	public int getMisses () {
+		return misses;
+	}
+
+	/** @return the number of cache files deleted because they were corrupt or the driver rejected them */
+	public int getRejected () {
+		return rejected;
+	}
+}
@@ -0,0 +1,103 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.util.concurrent.locks.LockSupport;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/** Follows the JavaFX pulses with an {@link AnimationTimer}, so the render thread can time its frames to finish just before
+ * the next pulse instead of arriving at a random phase.
+ * <p>
+ * The phase error is the time a frame finished after the point it was aimed at (the next pulse minus a small margin), so
+ * negative values mean the frame was early. A pulse is counted as missed if the frame aimed at it was not finished in
+ * time. */
+public class LwjglFXPulseTracker {
+	/** Time reserved between the end of a frame and the pulse for posting it to JavaFX. */
+	static public long margin = 1000000;
+
+	private final AnimationTimer timer = new AnimationTimer() {
+		@Override
+		public void handle (long now) {
+			pulse(now);
+		}
+	};
+
+	private volatile long lastPulse;
+	private volatile long period = 1000000000 / 60;
+
+	private long renderTime;
+	private long targetPulse;
+	private long phaseError, averagePhaseError;
+	private long frames, missedPulses;
+
+	void start () {
+		Platform.runLater(() -> timer.start());
+	}
+
+	void stop () {
+		Platform.runLater(() -> timer.stop());
+	}
+
+	private void pulse (long now) {
+		long last = lastPulse;
+		if (last != 0) {
+			long delta = now - last;
+			// Skip gaps where JavaFX did not pulse at all, they would ruin the estimate
+			if (delta > 0 && delta < 3 * period) period += (delta - period) / 8;
+		}
+		lastPulse = now;
+	}
+
+	/** Parks the calling thread until a frame taking the average render time would finish just before the next pulse. Returns
+	 * immediately as long as no pulse has been seen. */
+	void waitForRenderSlot () {
+		long pulse = lastPulse;
+		if (pulse == 0) return;
+		long period = this.period;
+		long now = System.nanoTime();
+
+		long next = now < pulse ? pulse : pulse + ((now - pulse) / period + 1) * period;
+		// Never aim twice at the same pulse
+		if (next - targetPulse < period / 2) next += period;
+		targetPulse = next;
+
+		long start = next - renderTime - margin;
+		while ((now = System.nanoTime()) < start)
+			LockSupport.parkNanos(start - now);
+	}
+
+	/** Updates the render time estimate and the phase statistics with a frame rendered in the given time span. */
+	void frameRendered (long renderStart, long renderEnd) {
+		long duration = renderEnd - renderStart;
+		renderTime = frames == 0 ? duration : renderTime + (duration - renderTime) / 8;
+		frames++;
+		if (targetPulse == 0) return;
+		phaseError = renderEnd - (targetPulse - margin);
+		averagePhaseError += (phaseError - averagePhaseError) / 8;
+		if (renderEnd > targetPulse) missedPulses++;
+	}
+
+	/** @return the estimated time between two pulses in nanoseconds */
+	public long getPulsePeriod () {
+		return period;
+	}
+
+	/** @return the phase error of the last frame in nanoseconds */
+	public long getPhaseError () {
+		return phaseError;
+	}
+
+	/** @return the exponential moving average of the phase error in nanoseconds */
+	public long getAveragePhaseError () {
+		return averagePhaseError;
+	}
+
+	public long getMissedPulses () {
+		return missedPulses;
+	}
+
+	/** @return the frames rendered since pacing to the pulses started */
+	public long getFrames () {
+		return frames;
+	}
+}
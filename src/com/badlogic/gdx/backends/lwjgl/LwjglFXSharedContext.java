@@ -0,0 +1,81 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+
+import org.lwjgl.LWJGLException;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.Drawable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
+import org.lwjgl.opengl.SharedDrawable;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** An OpenGL context that shares textures, buffers and programs with the context of the render thread, so a worker thread can
+ * upload assets without stalling the frames. The worker makes the context current, issues its uploads, then hands the
+ * objects to the render thread with {@link #fence()} and {@link LwjglFXGraphics#whenSignaled(GLSync, Runnable)}:
+ *
+ * <pre>
+ * context.makeCurrent();
+ * int texture = uploadTexture();
+ * graphics.whenSignaled(context.fence(), () -&gt; useTexture(texture));
+ * context.release();
+ * </pre>
+ *
+ * A context can only be current on one thread at a time. Objects that hold state in the context, like vertex array objects and
+ * framebuffers, are not shared. */
+public class LwjglFXSharedContext implements Disposable {
+	private final SharedDrawable drawable;
+	private boolean useFences;
+
+	LwjglFXSharedContext (Drawable shared) {
+		try {
+			drawable = new SharedDrawable(shared);
+		} catch (LWJGLException e) {
+			throw new GdxRuntimeException("Couldn't create a shared context.", e);
+		}
+	}
+
+	/** Makes the context current on the calling thread. */
+	public void makeCurrent () {
+		try {
+			drawable.makeCurrent();
+		} catch (LWJGLException e) {
+			throw new GdxRuntimeException(e);
+		}
+		ContextCapabilities caps = GLContext.getCapabilities();
+		useFences = caps.OpenGL32 || caps.GL_ARB_sync;
+	}
+
+	/** Releases the context from the calling thread, so it can be made current on another one. */
+	public void release () {
+		try {
+			drawable.releaseContext();
+		} catch (LWJGLException e) {
+			throw new GdxRuntimeException(e);
+		}
+	}
+
+	/** Must be called on the thread the context is current on.
+	 * @return a fence that signals once the commands issued so far are complete, or null if the driver has no sync objects. In
+	 *         that case this blocks until they are complete. */
+	public GLSync fence () {
+		if (!useFences) {
+			GL11.glFinish();
+			return null;
+		}
+		GLSync sync = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		// The fence has to reach the GPU, or the render thread would wait for it forever
+		GL11.glFlush();
+		return sync;
+	}
+
+	/** Destroys the context. It must not be current on any thread. */
+	@Override
+	public void dispose () {
+		drawable.destroy();
+	}
+}
@@ -0,0 +1,42 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+/** The stages of the startup of a {@link LwjglFXApplication}. The OpenGL context and the stream are set up while JavaFX still
+ * builds the scene, then the application waits for the stage, calls {@link com.badlogic.gdx.ApplicationListener#create()} and
+ * renders its first frame. Until that frame is shown, the view shows a placeholder in the initial background color of the
+ * configuration.
+ * <p>
+ * All times are in nanoseconds since the application was constructed, or -1 if the stage has not been reached yet. */
+public class LwjglFXStartup {
+	final long start = System.nanoTime();
+	volatile long contextReady, sceneReady, created, firstFrame;
+
+	/** @return the time the OpenGL context and the stream were ready */
+	public long getContextTime () {
+		return since(contextReady);
+	}
+
+	/** @return the time the view was shown in a stage */
+	public long getSceneTime () {
+		return since(sceneReady);
+	}
+
+	/** @return the time {@link com.badlogic.gdx.ApplicationListener#create()} returned */
+	public long getCreateTime () {
+		return since(created);
+	}
+
+	/** @return the time the first frame was handed to the view on the JavaFX thread */
+	public long getFirstFrameTime () {
+		return since(firstFrame);
+	}
+
+	private long since (long time) {
+		return time == 0 ? -1 : time - start;
+	}
+
+	@Override
+	public String toString () {
+		return "context " + getContextTime() / 1000000 + "ms, scene " + getSceneTime() / 1000000 + "ms, create "
+			+ getCreateTime() / 1000000 + "ms, first frame " + getFirstFrameTime() / 1000000 + "ms";
+	}
+}
@@ -0,0 +1,98 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import org.lwjgl.util.stream.TextureStream;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/** A {@link Texture} that draws the texture of a {@link TextureStream}, for example one passed to
+ * {@link org.lwjgl.util.stream.StreamTextureLoader.Callback#loaded(TextureStream)}. It takes the stream over,
+ * {@link #dispose()} destroys it. The texture is not managed, the stream keeps its size.
+ * <p>
+ * Filled by a {@link LwjglFXPngDecoder}, it draws like a texture loaded from the same file, with straight alpha. */
+public class LwjglFXStreamTexture extends Texture {
+	private final TextureStream stream;
+
+	public LwjglFXStreamTexture (TextureStream stream) {
+		super(GL20.GL_TEXTURE_2D, stream.getTexture(), new StreamTextureData(stream));
+		this.stream = stream;
+	}
+
+	public TextureStream getStream () {
+		return stream;
+	}
+
+	@Override
+	public void dispose () {
+		if (glHandle == 0) return;
+		// The stream deletes the texture
+		stream.destroy();
+		glHandle = 0;
+	}
+
+	/** Already uploaded by the stream, loading it only sets the filter and wrap parameters of the texture. */
+	static private final class StreamTextureData implements TextureData {
+		private final int width, height;
+
+		StreamTextureData (TextureStream stream) {
+			width = stream.getWidth();
+			height = stream.getHeight();
+		}
+
+		@Override
+		public TextureDataType getType () {
+			return TextureDataType.Custom;
+		}
+
+		@Override
+		public boolean isPrepared () {
+			return true;
+		}
+
+		@Override
+		public void prepare () {
+		}
+
+		@Override
+		public Pixmap consumePixmap () {
+			throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+		}
+
+		@Override
+		public boolean disposePixmap () {
+			return false;
+		}
+
+		@Override
+		public void consumeCustomData (int target) {
+		}
+
+		@Override
+		public int getWidth () {
+			return width;
+		}
+
+		@Override
+		public int getHeight () {
+			return height;
+		}
+
+		@Override
+		public Pixmap.Format getFormat () {
+			return Pixmap.Format.RGBA8888;
+		}
+
+		@Override
+		public boolean useMipMaps () {
+			return false;
+		}
+
+		@Override
+		public boolean isManaged () {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import com.badlogic.gdx.ApplicationListener;
+
+/** An {@link ApplicationListener} that renders additional views added with {@link LwjglFXApplication#addView(String, javafx.scene.image.ImageView)}.
+ * All views share the OpenGL context and resources of the application. {@link #render()} renders the main view as before, then
+ * {@link #render(String)} is called for every other visible view, with its stream bound and the viewport set to its size. The
+ * frames of all views are handed to JavaFX in one batch. */
+public interface LwjglFXViewListener extends ApplicationListener {
+	/** Renders the named view. Its size is the fit size of its ImageView, {@link com.badlogic.gdx.Graphics} reports the size of
+	 * the main view. */
+	public void render (String view);
+
+	/** @return whether the named view needs a new frame, only called while it is visible */
+	public default boolean shouldRenderView (String view) {
+		return true;
+	}
+}
@@ -0,0 +1,124 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.image.ImageView;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+/** Tracks on the JavaFX thread whether a view can actually be seen. That is, its stage is showing and not iconified, the view
+ * is attached to a scene, the view and all of its parents are visible, and its bounds intersect the window and the clip of
+ * every parent. A view in an unselected tab or scrolled out of a scroll pane is hidden. The result is published to the render
+ * thread, which can then skip the read back. */
+final class LwjglFXViewVisibility {
+	private final ImageView view;
+	private final Runnable onChange;
+
+	private volatile boolean visible = true;
+	private final AtomicBoolean becameVisible = new AtomicBoolean();
+
+	private final InvalidationListener updateListener = o -> update();
+	private final InvalidationListener rewatchListener = o -> rewatch();
+	private final List<Observable> watched = new ArrayList<Observable>();
+
+	/** @param onChange called on the JavaFX thread whenever the visibility changed */
+	LwjglFXViewVisibility (ImageView view, Runnable onChange) {
+		this.view = view;
+		this.onChange = onChange;
+		if (Platform.isFxApplicationThread())
+			attach();
+		else
+			Platform.runLater(() -> attach());
+	}
+
+	private void attach () {
+		view.sceneProperty().addListener(rewatchListener);
+		view.localToSceneTransformProperty().addListener(updateListener);
+		view.boundsInLocalProperty().addListener(updateListener);
+		rewatch();
+	}
+
+	/** Registers the listeners again after the view moved to another parent, scene or window. */
+	private void rewatch () {
+		for (Observable observable : watched) {
+			observable.removeListener(updateListener);
+			observable.removeListener(rewatchListener);
+		}
+		watched.clear();
+
+		for (Node node = view; node != null; node = node.getParent()) {
+			watch(node.visibleProperty(), updateListener);
+			watch(node.clipProperty(), updateListener);
+			if (node != view) watch(node.parentProperty(), rewatchListener);
+		}
+		Scene scene = view.getScene();
+		if (scene != null) {
+			watch(scene.widthProperty(), updateListener);
+			watch(scene.heightProperty(), updateListener);
+			watch(scene.windowProperty(), rewatchListener);
+			Window window = scene.getWindow();
+			if (window != null) {
+				watch(window.showingProperty(), updateListener);
+				if (window instanceof Stage) watch(((Stage)window).iconifiedProperty(), updateListener);
+			}
+		}
+		update();
+	}
+
+	private void watch (Observable observable, InvalidationListener listener) {
+		observable.addListener(listener);
+		watched.add(observable);
+	}
+
+	private void update () {
+		boolean visible = computeVisible();
+		if (visible == this.visible) return;
+		this.visible = visible;
+		if (visible) becameVisible.set(true);
+		onChange.run();
+	}
+
+	private boolean computeVisible () {
+		Scene scene = view.getScene();
+		if (scene == null) return false;
+		Window window = scene.getWindow();
+		if (window == null || !window.isShowing()) return false;
+		if (window instanceof Stage && ((Stage)window).isIconified()) return false;
+
+		Bounds bounds = view.localToScene(view.getBoundsInLocal());
+		bounds = intersect(bounds, new BoundingBox(0, 0, scene.getWidth(), scene.getHeight()));
+		for (Node node = view; node != null && bounds != null; node = node.getParent()) {
+			if (!node.isVisible()) return false;
+			Node clip = node.getClip();
+			if (clip != null) bounds = intersect(bounds, node.localToScene(clip.getBoundsInParent()));
+		}
+		return bounds != null;
+	}
+
+	private static Bounds intersect (Bounds a, Bounds b) {
+		double minX = Math.max(a.getMinX(), b.getMinX());
+		double minY = Math.max(a.getMinY(), b.getMinY());
+		double maxX = Math.min(a.getMaxX(), b.getMaxX());
+		double maxY = Math.min(a.getMaxY(), b.getMaxY());
+		if (maxX <= minX || maxY <= minY) return null;
+		return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	boolean isVisible () {
+		return visible;
+	}
+
+	/** @return whether the view became visible since the last call */
+	boolean consumeBecameVisible () {
+		return becameVisible.getAndSet(false);
+	}
+}
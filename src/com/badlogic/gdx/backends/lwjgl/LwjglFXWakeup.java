@@ -0,0 +1,35 @@
+package com.badlogic.gdx.backends.lwjgl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/** The one primitive the idle render thread parks on. Input events, posted runnables, rendering requests, resizes and focus
+ * changes all {@link #signal()} it. A signal raised while the render thread is busy is kept, so the next
+ * {@link #await(long)} returns immediately. */
+final class LwjglFXWakeup {
+	private final AtomicBoolean signaled = new AtomicBoolean();
+	private volatile Thread waiter;
+
+	void signal () {
+		if (signaled.getAndSet(true)) return;
+		Thread waiter = this.waiter;
+		if (waiter != null) LockSupport.unpark(waiter);
+	}
+
+	/** Parks the calling thread until {@link #signal()} is called or the timeout has passed, consuming the signal.
+	 * @return whether a signal was consumed */
+	boolean await (long timeoutNanos) {
+		waiter = Thread.currentThread();
+		try {
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (!signaled.getAndSet(false)) {
+				long remaining = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+				if (remaining <= 0) return false;
+				LockSupport.parkNanos(this, remaining);
+			}
+			return true;
+		} finally {
+			waiter = null;
+		}
+	}
+}
@@ -2,14 +2,21 @@ package com.badlogic.gdx.backends.lwjgl;
 import static org.lwjgl.opengl.AMDDebugOutput.glDebugMessageCallbackAMD;
 import static org.lwjgl.opengl.ARBDebugOutput.glDebugMessageCallbackARB;
 import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glViewport;
 import static org.lwjgl.opengl.GL30.GL_MAX_SAMPLES;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.WritableImage;
 
@@ -23,35 +30,70 @@ import org.lwjgl.opengl.GLContext;
 import org.lwjgl.opengl.Pbuffer;
 import org.lwjgl.opengl.PixelFormat;
 import org.lwjgl.util.stream.RenderStream;
+import org.lwjgl.util.stream.RenderStreamPipelined;
+import org.lwjgl.util.stream.StallMonitor;
+import org.lwjgl.util.stream.StreamBudget;
 import org.lwjgl.util.stream.StreamHandler;
+import org.lwjgl.util.stream.StreamSlots;
 import org.lwjgl.util.stream.StreamUtil;
 import org.lwjgl.util.stream.StreamUtil.RenderStreamFactory;
 
+import com.badlogic.gdx.Gdx;
+
 
 public class LwjglToJavaFX {
 
+	/** The name of the view passed to the constructor. */
+	public static final String MAIN_VIEW = "main";
+
 	static Drawable drawable;
 
+	static {
+		// Replaceable by the application with StreamBudget.setListener
+		StreamBudget.setListener(new StreamBudget.Listener() {
+			public void exceeded(final long usage, final long cap) {
+				if ( Gdx.app != null )
+					Gdx.app.error("LwjglToJavaFX", "Stream memory budget exceeded: " + usage + " of " + cap + " bytes in use and no stream left to degrade.");
+			}
+		});
+	}
+
 	private final ConcurrentLinkedQueue<Runnable> pendingRunnables;
+	private final ConcurrentLinkedQueue<Runnable> pendingUploads;
 
 	private final Pbuffer pbuffer;
 	private final int maxSamples;
 	
 	private RenderStreamFactory renderStreamFactory;
-	private RenderStream renderStream;
+	private final RenderStreamFactory pipelinedFactory;
+	private final Thread renderThread;
 
-	private ImageView  targetView;
-	private WritableImage renderImage;
+	// Only accessed on the render thread
+	private final Map<String, View> views = new LinkedHashMap<String, View>();
+	private final View mainView;
 
 	private int transfersToBuffer = 3;
 	private int samples = 1;
+	private boolean resizeTransition = true;
+	private boolean pipelined;
 
 	private final AtomicLong snapshotRequest;
 
+	/** Keeps the last frame of every view on dispose, may be null. */
+	LwjglFXFrameCache frameCache;
+
+	/** Called once on the JavaFX thread, after the first frame of the main view has been uploaded. */
+	volatile Runnable firstFrameListener;
+
+	private long trimDelay = -1;
+	private long idleSince;
+	private boolean trimmed;
+	private long releasedBytes;
+	private int trims;
+
 	LwjglToJavaFX(final ImageView target) {
-		targetView = target;
-		target.setScaleY(-1);
 		this.pendingRunnables = new ConcurrentLinkedQueue<Runnable>();
+		this.pendingUploads = new ConcurrentLinkedQueue<Runnable>();
 
 		if ( (Pbuffer.getCapabilities() & Pbuffer.PBUFFER_SUPPORTED) == 0 )
 			throw new UnsupportedOperationException("Support for pbuffers is required.");
@@ -78,7 +120,11 @@ public class LwjglToJavaFX {
 			glDebugMessageCallbackAMD(new AMDDebugOutputCallback());
 
 		this.renderStreamFactory = StreamUtil.getRenderStreamImplementation();
-		this.renderStream = renderStreamFactory.create(getReadHandler(), 1, transfersToBuffer);
+		this.pipelinedFactory = RenderStreamPipelined.getFactory(pbuffer);
+		this.renderThread = Thread.currentThread();
+
+		this.mainView = new View(MAIN_VIEW, target);
+		views.put(MAIN_VIEW, mainView);
 
 		this.snapshotRequest = new AtomicLong();
 	}
@@ -94,21 +140,114 @@ public class LwjglToJavaFX {
 	public void setRenderStreamFactory(final RenderStreamFactory renderStreamFactory) {
 		pendingRunnables.offer(new Runnable() {
 			public void run() {
-				if ( renderStream != null )
-					renderStream.destroy();
-
 				LwjglToJavaFX.this.renderStreamFactory = renderStreamFactory;
 
-				renderStream = renderStreamFactory.create(renderStream.getHandler(), samples, transfersToBuffer);
+				for ( View view : views.values() )
+					view.resetStream();
+			}
+		});
+	}
+
+	/**
+	 * Adds a view with its own stream, rendered in the same context as the main view. Must be called on the render thread.
+	 *
+	 * @param visibility tracks whether the view can be seen, the view is not rendered while it cannot
+	 */
+	void addView(final String name, final ImageView target, final LwjglFXViewVisibility visibility) {
+		if ( views.containsKey(name) )
+			throw new IllegalArgumentException("A view with this name exists already: " + name);
+
+		final View view = new View(name, target);
+		view.visibility = visibility;
+		views.put(name, view);
+	}
+
+	/** Removes and destroys a view added with {@link #addView}. Must be called on the render thread. */
+	void removeView(final String name) {
+		if ( MAIN_VIEW.equals(name) )
+			throw new IllegalArgumentException("The main view cannot be removed.");
+
+		final View view = views.remove(name);
+		if ( view != null )
+			view.destroy();
+	}
+
+	/** Renders all visible views but the main view in turn, each into its own stream. */
+	void renderViews(final LwjglFXViewListener listener) {
+		for ( View view : views.values() ) {
+			if ( view == mainView || (view.visibility != null && !view.visibility.isVisible()) || !listener.shouldRenderView(view.name) )
+				continue;
+
+			// The streams are in use, they must not be trimmed
+			idleSince = 0;
+			trimmed = false;
+
+			begin(view);
+			listener.render(view.name);
+			view.renderStream.swapBuffers();
+		}
+	}
+
+	/** Returns whether a view other than the main view can be seen. Render thread only. */
+	boolean isAnyViewVisible() {
+		for ( View view : views.values() ) {
+			if ( view != mainView && (view.visibility == null || view.visibility.isVisible()) )
+				return true;
+		}
+		return false;
+	}
+
+	/** Posts the frames read back from all views since the last call to JavaFX, as a single batch. */
+	void flushUploads() {
+		if ( pendingUploads.isEmpty() )
+			return;
+
+		Platform.runLater(new Runnable() {
+			public void run() {
+				Runnable upload;
+				while ( (upload = pendingUploads.poll()) != null )
+					upload.run();
 			}
 		});
 	}
 
 	void dispose() {
-		renderStream.destroy();
+		// Destroying a stream waits for its buffers still queued for JavaFX
+		flushUploads();
+
+		if ( frameCache != null )
+			saveFrames();
+
+		for ( View view : views.values() )
+			view.destroy();
+		views.clear();
+
 		pbuffer.destroy();
 	}
 
+	/** Saves the frame shown by every view to the frame cache, after the pending uploads. Gives up if JavaFX does not respond. */
+	private void saveFrames() {
+		final CountDownLatch saved = new CountDownLatch(1);
+		final List<View> views = new ArrayList<View>(this.views.values());
+		try {
+			Platform.runLater(new Runnable() {
+				public void run() {
+					try {
+						for ( View view : views )
+							frameCache.save(view.name, view.target);
+					} finally {
+						saved.countDown();
+					}
+				}
+			});
+			saved.await(1, TimeUnit.SECONDS);
+		} catch (IllegalStateException e) {
+			// JavaFX has exited already
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	public void updateSnapshot() {
 		snapshotRequest.incrementAndGet();
 	}
@@ -125,6 +264,135 @@ public class LwjglToJavaFX {
 		resetStreams();
 	}
 
+	/**
+	 * Sets whether the view keeps showing the previous frame, scaled, while the stream primes its buffers after a resize.
+	 * Otherwise the first frames after a resize are copied synchronously, which stalls the render thread. Enabled by default.
+	 */
+	public void setResizeTransition(final boolean resizeTransition) {
+		if ( this.resizeTransition == resizeTransition )
+			return;
+
+		this.resizeTransition = resizeTransition;
+		pendingRunnables.offer(new Runnable() {
+			public void run() {
+				for ( View view : views.values() )
+					view.renderStream.setResizeTransition(resizeTransition);
+			}
+		});
+	}
+
+	public boolean isResizeTransition() {
+		return resizeTransition;
+	}
+
+	/**
+	 * Sets whether frames are resolved and read back on a separate transfer thread with a shared context, so the render thread
+	 * only renders. See {@link RenderStreamPipelined}. Falls back to the render stream factory if the driver has no sync
+	 * objects. Disabled by default.
+	 */
+	public void setPipelined(final boolean pipelined) {
+		if ( this.pipelined == pipelined )
+			return;
+
+		this.pipelined = pipelined;
+		resetStreams();
+	}
+
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * Sets how long the stream may stay unused, because the view is hidden or nothing is rendered, before its render targets,
+	 * transfer buffers and pinned memory are released. They are created again with the next frame.
+	 *
+	 * @param millis the idle period in milliseconds, or a negative value to never release them
+	 */
+	public void setIdleTrimDelay(final long millis) {
+		this.trimDelay = millis < 0 ? -1 : millis * 1000000;
+	}
+
+	public long getIdleTrimDelay() {
+		return trimDelay < 0 ? -1 : trimDelay / 1000000;
+	}
+
+	/** Returns the bytes of GPU and pinned memory currently held by the streams of all views. Must be called on the render thread. */
+	public long getAllocatedBytes() {
+		long bytes = 0;
+		for ( View view : views.values() )
+			bytes += view.renderStream.getAllocatedBytes();
+		return bytes;
+	}
+
+	/**
+	 * Returns the memory budget account of the main view. Its priority decides the order in which views are degraded when the
+	 * {@link StreamBudget} cap is reached.
+	 */
+	public StreamBudget.Account getBudgetAccount() {
+		return mainView.budgetAccount;
+	}
+
+	/** Returns the memory budget account of the named view, or null if there is no such view. Must be called on the render thread. */
+	public StreamBudget.Account getBudgetAccount(final String view) {
+		final View v = views.get(view);
+		return v == null ? null : v.budgetAccount;
+	}
+
+	/** Returns the total number of bytes released by idle trimming. */
+	public long getReleasedBytes() {
+		return releasedBytes;
+	}
+
+	public int getTrimCount() {
+		return trims;
+	}
+
+	/**
+	 * Called by the render loop for every iteration in which nothing is rendered into the stream. Releases the stream's memory
+	 * once the idle period has passed.
+	 *
+	 * @return the nanoseconds until the memory will be released, or Long.MAX_VALUE if that is not pending
+	 */
+	long idle(final long now) {
+		if ( idleSince == 0 )
+			idleSince = now;
+
+		if ( trimDelay < 0 || trimmed )
+			return Long.MAX_VALUE;
+
+		final long remaining = idleSince + trimDelay - now;
+		if ( 0 < remaining )
+			return remaining;
+
+		for ( View view : views.values() ) {
+			releasedBytes += view.renderStream.getAllocatedBytes();
+			view.renderStream.trim();
+		}
+		trimmed = true;
+		trims++;
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Enables or disables capturing the stack trace of the JavaFX thread when the render thread stalls on the stream. See
+	 * {@link StallMonitor}.
+	 */
+	public void setStallDumps(final boolean enabled) {
+		Platform.runLater(new Runnable() {
+			public void run() {
+				StallMonitor.setDumpThread(enabled ? Thread.currentThread() : null);
+			}
+		});
+	}
+
+	/**
+	 * Enables or disables logging the stalls of the render thread on the stream through the application log. At most one stall
+	 * per second is logged, with the number of stalls since the previous one. Disabled by default. See {@link StallMonitor}.
+	 */
+	public static void setStallLogging(final boolean enabled) {
+		StallMonitor.setListener(enabled ? new StallLogger() : null);
+	}
+
 	public void setSamples(final int samples) {
 		if ( this.samples == samples )
 			return;
@@ -136,8 +404,8 @@ public class LwjglToJavaFX {
 	private void resetStreams() {
 		pendingRunnables.offer(new Runnable() {
 			public void run() {
-				renderStream.destroy();
-				renderStream = renderStreamFactory.create(renderStream.getHandler(), samples, transfersToBuffer);
+				for ( View view : views.values() )
+					view.resetStream();
 				updateSnapshot();
 			}
 		});
@@ -150,49 +418,155 @@ public class LwjglToJavaFX {
 	}
 	
 	void begin(){
+		idleSince = 0;
+		trimmed = false;
 		drainPendingActionsQueue();
-		renderStream.bind();
+		begin(mainView);
 	}
 	
 	void end(){
-		renderStream.swapBuffers();
+		mainView.renderStream.swapBuffers();
 	}
-	
-	private StreamHandler getReadHandler() {
-		return new StreamHandler() {
 
-			public int getWidth() {
-				return (int)targetView.getFitWidth();
-			}
+	private static void begin(final View view) {
+		view.renderStream.bind();
+		// The viewport is context state, set it for every view rendered in turn
+		glViewport(0, 0, (int)view.target.getFitWidth(), (int)view.target.getFitHeight());
+	}
 
-			public int getHeight() {
-				return (int)targetView.getFitHeight();
-			}
+	/** An ImageView and the stream rendered into it. */
+	private final class View {
 
-			public void process(final int width, final int height, final ByteBuffer data, final int stride, final Semaphore signal) {
-				// This method runs in the background rendering thread
-				// TODO: Run setPixels on the PlatformImage in this thread, run pixelsDirty on JFX application thread with runLater.
-				Platform.runLater(new Runnable() {
-					public void run() {
-						try {
-							// If we're quitting, discard update
-							if ( !targetView.isVisible() )
-								return;
-							// Detect resize and recreate the image
-							if ( renderImage == null || (int)renderImage.getWidth() != width || (int)renderImage.getHeight() != height ) {
-								renderImage = new WritableImage(width, height);
-								targetView.setImage(renderImage);
-							}
+		final String    name;
+		final ImageView target;
+
+		final StreamBudget.Account budgetAccount;
+		volatile int budgetLevel;
+
+		LwjglFXViewVisibility visibility;
+
+		RenderStream renderStream;
 
-							// Upload the image to JavaFX
-							renderImage.getPixelWriter().setPixels(0, 0, width, height, javafx.scene.image.PixelFormat.getByteBgraPreInstance(), data, stride);
-						} finally {
-							// Notify the render thread that we're done processing
-							signal.release();
+		// Only accessed on the JavaFX thread
+		WritableImage renderImage;
+
+		View(final String name, final ImageView target) {
+			this.name = name;
+			this.target = target;
+			target.setScaleY(-1);
+
+			this.budgetAccount = StreamBudget.open(name, 0, new StreamBudget.Degrader() {
+				public void setLevel(final int level) {
+					budgetLevel = level;
+					pendingRunnables.offer(new Runnable() {
+						public void run() {
+							if ( views.get(View.this.name) == View.this )
+								resetStream();
 						}
-					}
-				});
+					});
+				}
+			});
+
+			this.renderStream = createRenderStream();
+		}
+
+		private RenderStream createRenderStream() {
+			// Degraded by the memory budget: no multisampling, then the fewest transfer buffers
+			final int level = budgetLevel;
+			final int samples = StreamBudget.LEVEL_NO_MSAA <= level ? 1 : LwjglToJavaFX.this.samples;
+			final int transfersToBuffer = StreamBudget.LEVEL_MINIMAL <= level ? Math.min(LwjglToJavaFX.this.transfersToBuffer, 2) : LwjglToJavaFX.this.transfersToBuffer;
+
+			final RenderStreamFactory factory = pipelined && pipelinedFactory.isSupported(GLContext.getCapabilities()) ? pipelinedFactory : renderStreamFactory;
+			final RenderStream renderStream = factory.create(getReadHandler(), samples, transfersToBuffer);
+			renderStream.setResizeTransition(resizeTransition);
+			renderStream.setBudgetAccount(budgetAccount);
+			return renderStream;
+		}
+
+		void resetStream() {
+			renderStream.destroy();
+			renderStream = createRenderStream();
+		}
+
+		void destroy() {
+			renderStream.destroy();
+			budgetAccount.close();
+		}
+
+		private StreamHandler getReadHandler() {
+			return new StreamHandler() {
+
+				public int getWidth() {
+					return (int)target.getFitWidth();
+				}
+
+				public int getHeight() {
+					return (int)target.getFitHeight();
+				}
+
+				public void process(final int width, final int height, final ByteBuffer data, final int stride, final StreamSlots.Signal signal) {
+					// This method runs in the background rendering thread, or the transfer thread of a pipelined stream. The
+					// upload is posted to JavaFX with those of the other views, see flushUploads.
+					// TODO: Run setPixels on the PlatformImage in this thread, run pixelsDirty on JFX application thread with runLater.
+					pendingUploads.offer(new Runnable() {
+						public void run() {
+							try {
+								// If we're quitting, discard update
+								if ( !target.isVisible() )
+									return;
+								// Detect resize and recreate the image, only if it has to grow. It grows like the render targets, so
+								// dragging a window edge does not allocate a new image per step.
+								if ( renderImage == null || (int)renderImage.getWidth() < width || (int)renderImage.getHeight() < height ) {
+									renderImage = new WritableImage(StreamUtil.getCapacity(width, renderImage == null ? 0 : (int)renderImage.getWidth(), Integer.MAX_VALUE),
+									                                StreamUtil.getCapacity(height, renderImage == null ? 0 : (int)renderImage.getHeight(), Integer.MAX_VALUE));
+									target.setImage(renderImage);
+								}
+								// Show only the part of the image that is in use
+								final Rectangle2D viewport = target.getViewport();
+								if ( viewport == null || (int)viewport.getWidth() != width || (int)viewport.getHeight() != height )
+									target.setViewport(new Rectangle2D(0, 0, width, height));
+
+								// Upload the image to JavaFX
+								renderImage.getPixelWriter().setPixels(0, 0, width, height, javafx.scene.image.PixelFormat.getByteBgraPreInstance(), data, stride);
+
+								final Runnable listener = firstFrameListener;
+								if ( View.this == mainView && listener != null ) {
+									firstFrameListener = null;
+									listener.run();
+								}
+							} finally {
+								// Notify the render thread that we're done processing
+								signal.release();
+							}
+						}
+					});
+
+					// The render thread may be idle, it would not flush this upload
+					if ( Thread.currentThread() != renderThread )
+						flushUploads();
+				}
+			};
+		}
+
+	}
+
+	/** Logs stalls through the application log, rate limited. */
+	private static final class StallLogger implements StallMonitor.Listener {
+
+		private long lastLog;
+		private int  suppressed;
+
+		public synchronized void stalled(final StallMonitor.Stall stall) {
+			final long now = System.nanoTime();
+			if ( lastLog != 0 && now - lastLog < 1000000000L ) {
+				suppressed++;
+				return;
 			}
-		};
+
+			lastLog = now;
+			Gdx.app.log("LwjglToJavaFX", suppressed == 0 ? stall.toString() : stall + "\n(" + suppressed + " more stalls since the last one logged)");
+			suppressed = 0;
+		}
+
 	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import org.lwjgl.MemoryUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A page-aligned block of direct memory that is freed deterministically with {@link #free()}, instead of when the garbage
+ * collector gets to its buffer. Freeing uses the runtime's buffer cleaner if it can be reached, otherwise the memory is
+ * left to the garbage collector as before.
+ * <p/>
+ * No runtime internals are referenced at compile time. They are looked up reflectively once, and everything falls back to
+ * safe defaults where they are not accessible.
+ */
+final class PinnedMemory {
+
+	/** The page size of the system, or 4096 if it cannot be determined. */
+	static final int PAGE_SIZE;
+
+	private static final Deallocator DEALLOCATOR;
+
+	static {
+		Object unsafe = null;
+		try {
+			unsafe = getUnsafeInstance();
+		} catch (Throwable t) {
+			// ignore
+		}
+
+		int pageSize = 4096; // Assume 4kb if Unsafe is not available
+		if ( unsafe != null ) {
+			try {
+				pageSize = (Integer)unsafe.getClass().getMethod("pageSize").invoke(unsafe);
+			} catch (Throwable t) {
+				// ignore
+			}
+		}
+		PAGE_SIZE = pageSize;
+
+		DEALLOCATOR = getDeallocator(unsafe);
+	}
+
+	private final ByteBuffer allocation;
+	private       ByteBuffer buffer;
+
+	/** Allocates a buffer of the specified size, aligned to {@link #PAGE_SIZE}. */
+	PinnedMemory(final int bytes) {
+		allocation = ByteBuffer.allocateDirect(bytes + PAGE_SIZE);
+
+		final int pageOffset = (int)(MemoryUtil.getAddress(allocation) % PAGE_SIZE);
+		allocation.position(pageOffset == 0 ? 0 : PAGE_SIZE - pageOffset); // Aligns to page
+		allocation.limit(allocation.position() + bytes);
+
+		buffer = allocation.slice().order(ByteOrder.nativeOrder());
+	}
+
+	/** Returns the aligned buffer. Must not be used after {@link #free()}. */
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/** Releases the memory immediately. Does nothing if it has been freed already. */
+	void free() {
+		if ( buffer == null )
+			return;
+
+		buffer = null;
+		if ( DEALLOCATOR != null ) {
+			try {
+				DEALLOCATOR.free(allocation);
+			} catch (Throwable t) {
+				// Left to the garbage collector
+			}
+		}
+	}
+
+	private interface Deallocator {
+
+		void free(ByteBuffer buffer) throws Exception;
+
+	}
+
+	private static Deallocator getDeallocator(final Object unsafe) {
+		// Java 9+: Unsafe.invokeCleaner
+		if ( unsafe != null ) {
+			try {
+				final Method invokeCleaner = unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+				return new Deallocator() {
+					public void free(final ByteBuffer buffer) throws Exception {
+						invokeCleaner.invoke(unsafe, buffer);
+					}
+				};
+			} catch (Throwable t) {
+				// ignore
+			}
+		}
+
+		// Java 8: DirectByteBuffer.cleaner().clean()
+		try {
+			final ByteBuffer probe = ByteBuffer.allocateDirect(1);
+
+			final Method cleaner = probe.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+			final Method clean = cleaner.getReturnType().getMethod("clean");
+			clean.setAccessible(true);
+
+			clean.invoke(cleaner.invoke(probe));
+			return new Deallocator() {
+				public void free(final ByteBuffer buffer) throws Exception {
+					final Object c = cleaner.invoke(buffer);
+					if ( c != null )
+						clean.invoke(c);
+				}
+			};
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	private static Object getUnsafeInstance() throws Exception {
+		final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+		final Field[] fields = unsafeClass.getDeclaredFields();
+
+		/*
+		Different runtimes use different names for the Unsafe singleton,
+		so we cannot use .getDeclaredField and we scan instead. For example:
+
+		Oracle: theUnsafe
+		PERC : m_unsafe_instance
+		Android: THE_ONE
+		*/
+		for ( Field field : fields ) {
+			if ( !field.getType().equals(unsafeClass) )
+				continue;
+
+			final int modifiers = field.getModifiers();
+			if ( !(Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)) )
+				continue;
+
+			field.setAccessible(true);
+			return field.get(null);
+		}
+
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes an image straight into the mapped transfer buffer of a {@link TextureStream}, see {@link StreamTextureLoader}. The
+ * size has to be known before decoding starts, usually from the image header.
+ */
+public interface PixelDecoder {
+
+	int getWidth();
+
+	int getHeight();
+
+	/**
+	 * Writes the pixels of the image into the buffer, as straight (not premultiplied) BGRA with <code>stride</code> bytes per
+	 * row. The first row is the top one, as in the image file, so the texture is sampled like any other texture loaded from
+	 * it. Code that passes the pixels on to JavaFX has to premultiply and flip them, see {@link PixelKernels}. Called on a
+	 * decoder thread.
+	 *
+	 * @param data   the mapped buffer, starting at position 0. It must not be used after this method returns.
+	 * @param stride the bytes per row, which may be larger than width * 4
+	 */
+	void decode(ByteBuffer data, int stride) throws IOException;
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/**
+ * Per-pixel operations on the 32-bit BGRA frames produced and consumed by the streams. All kernels work on absolute offsets,
+ * ignore the positions and limits of the buffers and leave them unmodified. Rows start at multiples of the stride, which may
+ * be larger than width * 4 (see {@link StreamUtil#getStride(int)}). The padding at the end of a row is not touched.
+ * <p/>
+ * By default the kernels pack several pixels or channels into one word (SWAR). The plain per-pixel implementations are used instead if
+ * the system property <code>org.lwjgl.util.stream.scalarKernels</code> is set to true.
+ * PixelKernelsBenchmark in the bench source root compares both at common resolutions.
+ */
+public final class PixelKernels {
+
+	/** True if the 64-bit implementations are in use. */
+	public static final boolean SWAR = !Boolean.getBoolean("org.lwjgl.util.stream.scalarKernels");
+
+	private PixelKernels() {
+	}
+
+	/** Converts BGRA pixels to RGBA, as used by Pixmap. src and trg may be the same buffer. */
+	public static void swizzle(final ByteBuffer src, final int srcStride, final ByteBuffer trg, final int trgStride, final int width, final int height) {
+		swizzle(src, srcStride, trg, trgStride, width, height, SWAR);
+	}
+
+	static void swizzle(final ByteBuffer src, final int srcStride, final ByteBuffer trg, final int trgStride, final int width, final int height, final boolean swar) {
+		final ByteBuffer s = littleEndian(src);
+		final ByteBuffer t = littleEndian(trg);
+
+		for ( int y = 0; y < height; y++ ) {
+			final int srcRow = y * srcStride;
+			final int trgRow = y * trgStride;
+
+			int x = 0;
+			if ( swar ) {
+				for ( ; x + 1 < width; x += 2 ) {
+					final long p = s.getLong(srcRow + (x << 2));
+					t.putLong(trgRow + (x << 2), (p & 0xFF00FF00FF00FF00L) | ((p >>> 16) & 0x000000FF000000FFL) | ((p & 0x000000FF000000FFL) << 16));
+				}
+			}
+			for ( ; x < width; x++ ) {
+				final int p = s.getInt(srcRow + (x << 2));
+				t.putInt(trgRow + (x << 2), (p & 0xFF00FF00) | ((p >>> 16) & 0xFF) | ((p & 0xFF) << 16));
+			}
+		}
+	}
+
+	/** Multiplies the color channels of BGRA (or RGBA) pixels with their alpha, as expected by ByteBgraPre. src and trg may be the same buffer. */
+	public static void premultiply(final ByteBuffer src, final int srcStride, final ByteBuffer trg, final int trgStride, final int width, final int height) {
+		premultiply(src, srcStride, trg, trgStride, width, height, SWAR);
+	}
+
+	static void premultiply(final ByteBuffer src, final int srcStride, final ByteBuffer trg, final int trgStride, final int width, final int height, final boolean swar) {
+		final ByteBuffer s = littleEndian(src);
+		final ByteBuffer t = littleEndian(trg);
+
+		for ( int y = 0; y < height; y++ ) {
+			final int srcRow = y * srcStride;
+			final int trgRow = y * trgStride;
+
+			if ( swar ) {
+				for ( int x = 0; x < width; x++ )
+					t.putInt(trgRow + (x << 2), premultiplySWAR(s.getInt(srcRow + (x << 2))));
+			} else {
+				for ( int x = 0; x < width; x++ )
+					t.putInt(trgRow + (x << 2), premultiplyScalar(s.getInt(srcRow + (x << 2))));
+			}
+		}
+	}
+
+	private static int premultiplySWAR(final int p) {
+		final int a = p >>> 24;
+		if ( a == 0xFF )
+			return p;
+
+		// Channels 0 and 2 in one multiply, channel 1 in another. x / 255 is computed as (x + 128 + ((x + 128) >> 8)) >> 8.
+		int c02 = (p & 0x00FF00FF) * a + 0x00800080;
+		c02 = ((c02 + ((c02 >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+
+		int c1 = ((p >>> 8) & 0xFF) * a + 0x80;
+		c1 = ((c1 + (c1 >>> 8)) >>> 8) & 0xFF;
+
+		return (p & 0xFF000000) | (c1 << 8) | c02;
+	}
+
+	private static int premultiplyScalar(final int p) {
+		final int a = p >>> 24;
+
+		final int c0 = ((p & 0xFF) * a + 127) / 255;
+		final int c1 = (((p >>> 8) & 0xFF) * a + 127) / 255;
+		final int c2 = (((p >>> 16) & 0xFF) * a + 127) / 255;
+
+		return (p & 0xFF000000) | (c2 << 16) | (c1 << 8) | c0;
+	}
+
+	/** Copies the rows of src to trg in reverse order. src and trg may be the same buffer, the rows are swapped then. */
+	public static void flip(final ByteBuffer src, final int srcStride, final ByteBuffer trg, final int trgStride, final int width, final int height) {
+		final int rowBytes = width << 2;
+
+		if ( src == trg ) {
+			if ( srcStride != trgStride )
+				throw new IllegalArgumentException("An in-place flip requires equal strides.");
+
+			final byte[] top = new byte[rowBytes];
+			final byte[] bottom = new byte[rowBytes];
+
+			final ByteBuffer b = src.duplicate();
+			for ( int y = 0; y < height / 2; y++ ) {
+				final int topRow = y * srcStride;
+				final int bottomRow = (height - 1 - y) * srcStride;
+
+				b.position(topRow);
+				b.get(top);
+				b.position(bottomRow);
+				b.get(bottom);
+				b.position(bottomRow);
+				b.put(top);
+				b.position(topRow);
+				b.put(bottom);
+			}
+			return;
+		}
+
+		final ByteBuffer s = src.duplicate();
+		final ByteBuffer t = trg.duplicate();
+		for ( int y = 0; y < height; y++ ) {
+			final int srcRow = y * srcStride;
+			s.limit(srcRow + rowBytes);
+			s.position(srcRow);
+
+			t.position((height - 1 - y) * trgStride);
+			t.put(s);
+
+			s.limit(s.capacity());
+		}
+	}
+
+	/**
+	 * Compares two frames in square tiles and sets the bit of every tile that differs. Tiles are numbered row by row,
+	 * there are ceil(width / tileSize) tiles per row.
+	 *
+	 * @return the number of tiles that differ
+	 */
+	public static int diff(final ByteBuffer a, final ByteBuffer b, final int stride, final int width, final int height, final int tileSize, final BitSet dirty) {
+		return diff(a, b, stride, width, height, tileSize, dirty, SWAR);
+	}
+
+	static int diff(final ByteBuffer a, final ByteBuffer b, final int stride, final int width, final int height, final int tileSize, final BitSet dirty, final boolean swar) {
+		if ( tileSize <= 0 )
+			throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+
+		final ByteBuffer l = littleEndian(a);
+		final ByteBuffer r = littleEndian(b);
+
+		final int tilesX = (width + tileSize - 1) / tileSize;
+
+		int count = 0;
+		for ( int tileY = 0; tileY * tileSize < height; tileY++ ) {
+			for ( int tileX = 0; tileX < tilesX; tileX++ ) {
+				final int tile = tileY * tilesX + tileX;
+
+				final int x0 = tileX * tileSize;
+				final int x1 = Math.min(x0 + tileSize, width);
+				final int y1 = Math.min((tileY + 1) * tileSize, height);
+
+				boolean differs = false;
+				for ( int y = tileY * tileSize; y < y1 && !differs; y++ )
+					differs = !rowEquals(l, r, y * stride, x0, x1, swar);
+
+				if ( differs ) {
+					dirty.set(tile);
+					count++;
+				} else
+					dirty.clear(tile);
+			}
+		}
+
+		return count;
+	}
+
+	private static boolean rowEquals(final ByteBuffer a, final ByteBuffer b, final int row, final int x0, final int x1, final boolean swar) {
+		int x = x0;
+		if ( swar ) {
+			for ( ; x + 1 < x1; x += 2 ) {
+				if ( a.getLong(row + (x << 2)) != b.getLong(row + (x << 2)) )
+					return false;
+			}
+		}
+		for ( ; x < x1; x++ ) {
+			if ( a.getInt(row + (x << 2)) != b.getInt(row + (x << 2)) )
+				return false;
+		}
+		return true;
+	}
+
+	private static ByteBuffer littleEndian(final ByteBuffer buffer) {
+		return buffer.order() == ByteOrder.LITTLE_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+}
@@ -40,6 +40,25 @@ public interface RenderStream {
 
 	void swapBuffers();
 
+	/**
+	 * Enables or disables the resize transition. When enabled, the frames that would have to be copied synchronously while
+	 * the transfer buffers are primed after start-up or a resize are not sent for processing, so the handler keeps showing
+	 * its previous frame. Render targets replaced by a resize are released with a fence instead of waiting for the GPU.
+	 */
+	void setResizeTransition(boolean enabled);
+
+	/**
+	 * Releases the render targets, the transfer buffers and the pinned memory of this stream. They are created again on the
+	 * next call to {@link #bind()}.
+	 */
+	void trim();
+
+	/** Returns the number of bytes of GPU and pinned memory currently allocated by this stream. */
+	long getAllocatedBytes();
+
+	/** Sets the account this stream reports its allocations to, or null to not report them. */
+	void setBudgetAccount(StreamBudget.Account account);
+
 	void destroy();
 
 }
\ No newline at end of file
@@ -81,6 +81,8 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 
 	private int synchronousFrames;
 
+	private boolean resizeTransition;
+
 	RenderStreamINTEL(final StreamHandler handler, final int samples, final int transfersToBuffer) {
 		super(handler, transfersToBuffer);
 
@@ -102,6 +104,10 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 		return handler;
 	}
 
+	public void setResizeTransition(final boolean enabled) {
+		this.resizeTransition = enabled;
+	}
+
 	private void resize(final int width, final int height) {
 		if ( width < 0 || height < 0 )
 			throw new IllegalArgumentException("Invalid dimensions: " + width + " x " + height);
@@ -151,16 +157,19 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 	}
 
 	public void bind() {
-		if ( this.width != handler.getWidth() || this.height != handler.getHeight() )
+		if ( this.width != handler.getWidth() || this.height != handler.getHeight() ) {
 			resize(handler.getWidth(), handler.getHeight());
+			reportAllocation(getAllocatedBytes());
+		}
 
 		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, renderFBO);
 	}
 
-	private void prepareFramebuffer(final int trgTEX) {
+	private boolean prepareFramebuffer(final int trgTEX) {
 		// Back-pressure. Make sure we never buffer more than <transfersToBuffer> frames ahead.
-		if ( processingState.get(trgTEX) )
-			waitForProcessingToComplete(trgTEX);
+		// If the handler is stuck, skip this frame instead of blocking the render thread.
+		if ( slots.isHandedOff(trgTEX) && !tryWaitForProcessingToComplete(trgTEX) )
+			return false;
 
 		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, renderFBO);
 		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, resolveFBO);
@@ -171,6 +180,8 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 
 		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
 		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
+
+		return true;
 	}
 
 	public void swapBuffers() {
@@ -180,11 +191,21 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 		final int trgTEX = (int)(bufferIndex % transfersToBuffer);
 		final int srcTEX = (int)((bufferIndex - 1) % transfersToBuffer);
 
-		prepareFramebuffer(trgTEX);
+		if ( !prepareFramebuffer(trgTEX) )
+			return;
+		slots.set(trgTEX, StreamSlots.READING);
 
 		// This will be non-zero for the first (transfersToBuffer - 1) frames
 		// after start-up or a resize.
 		if ( 0 < synchronousFrames ) {
+			if ( resizeTransition ) {
+				// The srcTEX is currently empty. Skip processing it, the handler keeps its previous frame until the next
+				// frame finds the current one in srcTEX.
+				synchronousFrames = 0;
+				bufferIndex++;
+				return;
+			}
+
 			// The srcTEX is currently empty. Wait for trgPBO's ReadPixels to complete and copy the current frame to srcTEX.
 			// We do this to avoid sending an empty buffer for processing, which would cause a visible flicker on resize.
 			copyFrames(trgTEX, srcTEX);
@@ -194,17 +215,15 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 		// Time to process the srcTEX
 
 		pinBuffer(srcTEX);
+		slots.set(srcTEX, StreamSlots.PINNED);
 
 		// Send the buffer for processing
 
-		processingState.set(srcTEX, true);
-		semaphores[srcTEX].acquireUninterruptibly();
-
 		handler.process(
 			width, height,
 			pinnedBuffers[srcTEX],
 			stride,
-			semaphores[srcTEX]
+			slots.process(srcTEX)
 		);
 
 		bufferIndex++;
@@ -247,22 +266,48 @@ final class RenderStreamINTEL extends StreamBuffered implements RenderStream {
 	}
 
 	private void destroyObjects() {
-		for ( int i = 0; i < semaphores.length; i++ ) {
-			if ( processingState.get(i) )
+		for ( int i = 0; i < transfersToBuffer; i++ ) {
+			if ( slots.isHandedOff(i) )
 				waitForProcessingToComplete(i);
 		}
+		slots.reset();
 
-		if ( rgbaBuffer != 0 ) fboUtil.deleteRenderbuffers(rgbaBuffer);
-		if ( depthBuffer != 0 ) fboUtil.deleteRenderbuffers(depthBuffer);
+		if ( rgbaBuffer != 0 ) {
+			fboUtil.deleteRenderbuffers(rgbaBuffer);
+			rgbaBuffer = 0;
+		}
+		if ( depthBuffer != 0 ) {
+			fboUtil.deleteRenderbuffers(depthBuffer);
+			depthBuffer = 0;
+		}
 
 		for ( int i = 0; i < resolveBuffers.length; i++ ) {
-			glDeleteTextures(resolveBuffers[i]);
+			if ( resolveBuffers[i] != 0 )
+				glDeleteTextures(resolveBuffers[i]);
 			resolveBuffers[i] = 0;
+			pinnedBuffers[i] = null;
 		}
 	}
 
+	public void trim() {
+		destroyObjects();
+
+		width = height = stride = 0;
+		reportAllocation(0);
+	}
+
+	public long getAllocatedBytes() {
+		if ( width == 0 || height == 0 )
+			return 0;
+
+		final long pixels = (long)width * height;
+
+		return (long)resolveBuffers.length * height * stride + pixels * 4 * Math.max(samples, 1) * 2;
+	}
+
 	public void destroy() {
 		destroyObjects();
+		reportAllocation(0);
 
 		if ( resolveFBO != 0 )
 			fboUtil.deleteFramebuffers(resolveFBO);
@@ -57,6 +57,13 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 
 	private int samples;
 
+	private final int maxRenderbufferSize;
+
+	// The allocated size of the render targets and read-back buffers. Grows only, the
+	// rendered and read back region is the width x height sub-rectangle at the origin.
+	protected int capacityWidth;
+	protected int capacityHeight;
+
 	private int rgbaBuffer;
 	private int depthBuffer;
 
@@ -65,6 +72,10 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 
 	protected int synchronousFrames;
 
+	private boolean resizeTransition;
+
+	protected final RetiredObjects retired;
+
 	protected RenderStreamPBO(final StreamHandler handler, final int samples, final int transfersToBuffer, final ReadbackType readbackType) {
 		super(handler, transfersToBuffer);
 
@@ -76,17 +87,59 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		renderFBO = fboUtil.genFramebuffers();
 
 		this.samples = StreamUtil.checkSamples(samples, caps);
+
+		maxRenderbufferSize = glGetInteger(GL_MAX_RENDERBUFFER_SIZE);
+
+		retired = new RetiredObjects(fboUtil);
 	}
 
 	public StreamHandler getHandler() {
 		return handler;
 	}
 
+	public void setResizeTransition(final boolean enabled) {
+		this.resizeTransition = enabled;
+	}
+
 	private void resize(final int width, final int height) {
 		if ( width < 0 || height < 0 )
 			throw new IllegalArgumentException("Invalid dimensions: " + width + " x " + height);
 
+		if ( 0 < width && 0 < height && width <= capacityWidth && height <= capacityHeight ) {
+			// The new size fits the current allocation, only the rendered region changes.
+			for ( int i = 0; i < transfersToBuffer; i++ ) {
+				if ( slots.isHandedOff(i) ) {
+					glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+					waitForProcessingToComplete(i);
+				}
+			}
+			glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+			// Pending transfers of the previous size are abandoned
+			slots.reset();
+
+			this.width = width;
+			this.height = height;
+
+			this.stride = StreamUtil.getStride(width);
+
+			bufferIndex = synchronousFrames = transfersToBuffer - 1;
+
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, renderFBO);
+			glViewport(0, 0, width, height);
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+			return;
+		}
+
+		final int capacityWidth = StreamUtil.getCapacity(width, this.capacityWidth, maxRenderbufferSize);
+		final int capacityHeight = StreamUtil.getCapacity(height, this.capacityHeight, maxRenderbufferSize);
+
+		// The previous render targets may still be in use by the GPU, release them once it is done
+		if ( resizeTransition )
+			retired.begin();
 		destroyObjects();
+		if ( retired.isRetiring() )
+			retired.end();
 
 		this.width = width;
 		this.height = height;
@@ -96,6 +149,9 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		if ( width == 0 || height == 0 )
 			return;
 
+		this.capacityWidth = capacityWidth;
+		this.capacityHeight = capacityHeight;
+
 		bufferIndex = synchronousFrames = transfersToBuffer - 1;
 
 		// Setup render FBO
@@ -105,17 +161,17 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		if ( samples <= 1 && readbackType == ReadbackType.GET_TEX_IMAGE )
 			fboUtil.framebufferTexture2D(
 				GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D,
-				rgbaBuffer = StreamUtil.createRenderTexture(width, height), 0
+				rgbaBuffer = StreamUtil.createRenderTexture(capacityWidth, capacityHeight), 0
 			);
 		else
 			fboUtil.framebufferRenderbuffer(
 				GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER,
-				rgbaBuffer = StreamUtil.createRenderBuffer(fboUtil, width, height, samples, GL_RGBA8)
+				rgbaBuffer = StreamUtil.createRenderBuffer(fboUtil, capacityWidth, capacityHeight, samples, GL_RGBA8)
 			);
 
 		fboUtil.framebufferRenderbuffer(
 			GL_DRAW_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER,
-			depthBuffer = StreamUtil.createRenderBuffer(fboUtil, width, height, samples, GL_DEPTH24_STENCIL8)
+			depthBuffer = StreamUtil.createRenderBuffer(fboUtil, capacityWidth, capacityHeight, samples, GL_DEPTH24_STENCIL8)
 		);
 
 		glViewport(0, 0, width, height);
@@ -132,12 +188,12 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 			if ( readbackType == ReadbackType.READ_PIXELS )
 				fboUtil.framebufferRenderbuffer(
 					GL_READ_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER,
-					msaaResolveBuffer = StreamUtil.createRenderBuffer(fboUtil, width, height, GL_RGBA8)
+					msaaResolveBuffer = StreamUtil.createRenderBuffer(fboUtil, capacityWidth, capacityHeight, GL_RGBA8)
 				);
 			else
 				fboUtil.framebufferTexture2D(
 					GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D,
-					msaaResolveBuffer = StreamUtil.createRenderTexture(width, height), 0
+					msaaResolveBuffer = StreamUtil.createRenderTexture(capacityWidth, capacityHeight), 0
 				);
 
 			fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
@@ -152,18 +208,43 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 			msaaResolveFBO = 0;
 		}
 
-		// Setup read-back buffers
+		// Setup read-back buffers, large enough for any size that fits the render targets
 
-		resizeBuffers(height, stride);
+		resizeBuffers(capacityHeight, StreamUtil.getStride(capacityWidth));
 	}
 
 	protected void resizeBuffers(final int height, final int stride) {
 		super.resizeBuffers(height, stride, GL_PIXEL_PACK_BUFFER, GL_STREAM_READ);
 	}
 
+	public void trim() {
+		destroyObjects();
+		retired.reap(true);
+
+		width = height = stride = 0;
+		reportAllocation(0);
+	}
+
+	public long getAllocatedBytes() {
+		if ( width == 0 || height == 0 )
+			return 0;
+
+		final long pixels = (long)capacityWidth * capacityHeight;
+		final int renderSamples = Math.max(samples, 1);
+
+		long bytes = (long)transfersToBuffer * capacityHeight * StreamUtil.getStride(capacityWidth); // Read-back buffers
+		bytes += pixels * 4 * renderSamples * 2; // Color and depth/stencil
+		if ( 1 < samples )
+			bytes += pixels * 4; // MSAA resolve
+
+		return bytes;
+	}
+
 	public void bind() {
-		if ( this.width != handler.getWidth() || this.height != handler.getHeight() )
+		if ( this.width != handler.getWidth() || this.height != handler.getHeight() ) {
 			resize(handler.getWidth(), handler.getHeight());
+			reportAllocation(getAllocatedBytes());
+		}
 
 		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, renderFBO);
 	}
@@ -182,6 +263,8 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 	}
 
 	public void swapBuffers() {
+		retired.reap(false);
+
 		if ( width == 0 || height == 0 )
 			return;
 
@@ -193,14 +276,26 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[trgPBO]);
 
 		// Back-pressure. Make sure we never buffer more than <transfersToBuffer> frames ahead.
-		if ( processingState.get(trgPBO) )
-			waitForProcessingToComplete(trgPBO);
+		// If the handler is stuck, skip this frame instead of blocking the render thread.
+		if ( slots.isHandedOff(trgPBO) && !tryWaitForProcessingToComplete(trgPBO) ) {
+			glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+			return;
+		}
 
 		readBack(trgPBO);
+		slots.set(trgPBO, StreamSlots.READING);
 
 		// This will be non-zero for the first (transfersToBuffer - 1) frames
 		// after start-up or a resize.
 		if ( 0 < synchronousFrames ) {
+			if ( resizeTransition ) {
+				// The srcPBO is currently empty. Skip processing it, the handler keeps its previous frame until the next
+				// frame finds the current one in srcPBO.
+				synchronousFrames = 0;
+				bufferIndex++;
+				return;
+			}
+
 			// The srcPBO is currently empty. Wait for trgPBO's ReadPixels to complete and copy the current frame to srcPBO.
 			// We do this to avoid sending an empty buffer for processing, which would cause a visible flicker on resize.
 			copyFrames(trgPBO, srcPBO);
@@ -210,17 +305,15 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		// Time to process the srcPBO
 
 		pinBuffer(srcPBO);
+		slots.set(srcPBO, StreamSlots.PINNED);
 
 		// Send the buffer for processing
 
-		processingState.set(srcPBO, true);
-		semaphores[srcPBO].acquireUninterruptibly();
-
 		handler.process(
 			width, height,
 			pinnedBuffers[srcPBO],
 			stride,
-			semaphores[srcPBO]
+			slots.process(srcPBO)
 		);
 
 		bufferIndex++;
@@ -230,8 +323,9 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 		// Stride in pixels
 		glPixelStorei(GL_PACK_ROW_LENGTH, stride >> 2);
 
-		// Asynchronously transfer current frame
-		if ( readbackType == ReadbackType.READ_PIXELS ) {
+		// Asynchronously transfer current frame. GetTexImage can only read the whole
+		// texture, so ReadPixels is used while rendering to a sub-rectangle.
+		if ( readbackType == ReadbackType.READ_PIXELS || width != capacityWidth || height != capacityHeight ) {
 			fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, msaaResolveFBO == 0 ? renderFBO : msaaResolveFBO);
 			glReadPixels(0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, 0);
 			fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
@@ -250,37 +344,50 @@ abstract class RenderStreamPBO extends StreamBufferedPBO implements RenderStream
 	protected abstract void pinBuffer(final int index);
 
 	protected void destroyObjects() {
-		for ( int i = 0; i < semaphores.length; i++ ) {
-			if ( processingState.get(i) ) {
+		for ( int i = 0; i < transfersToBuffer; i++ ) {
+			if ( slots.isHandedOff(i) ) {
 				glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
 				waitForProcessingToComplete(i);
 			}
 		}
+		slots.reset();
 
 		glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
 
 		for ( int i = 0; i < pbos.length; i++ ) {
 			if ( pbos[i] != 0 )
-				glDeleteBuffers(pbos[i]);
+				retired.buffer(pbos[i]);
+			retired.memory(pinnedBuffers[i]);
+			pbos[i] = 0;
+			pinnedBuffers[i] = null;
 		}
 
+		capacityWidth = capacityHeight = 0;
+
 		if ( msaaResolveBuffer != 0 ) {
 			if ( readbackType == ReadbackType.READ_PIXELS )
-				fboUtil.deleteRenderbuffers(msaaResolveBuffer);
+				retired.renderbuffer(msaaResolveBuffer);
 			else
-				glDeleteTextures(msaaResolveBuffer);
+				retired.texture(msaaResolveBuffer);
+			msaaResolveBuffer = 0;
+		}
+		if ( depthBuffer != 0 ) {
+			retired.renderbuffer(depthBuffer);
+			depthBuffer = 0;
 		}
-		if ( depthBuffer != 0 ) fboUtil.deleteRenderbuffers(depthBuffer);
 		if ( rgbaBuffer != 0 ) {
 			if ( samples <= 1 && readbackType == ReadbackType.GET_TEX_IMAGE )
-				glDeleteTextures(rgbaBuffer);
+				retired.texture(rgbaBuffer);
 			else
-				fboUtil.deleteRenderbuffers(rgbaBuffer);
+				retired.renderbuffer(rgbaBuffer);
+			rgbaBuffer = 0;
 		}
 	}
 
 	public void destroy() {
 		destroyObjects();
+		retired.reap(true);
+		reportAllocation(0);
 
 		if ( msaaResolveFBO != 0 )
 			fboUtil.deleteFramebuffers(msaaResolveFBO);
@@ -31,15 +31,11 @@
  */
 package org.lwjgl.util.stream;
 
-import org.lwjgl.BufferUtils;
-import org.lwjgl.MemoryUtil;
 import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.GLSync;
-import org.lwjgl.util.stream.StreamUtil.PageSizeProvider;
 import org.lwjgl.util.stream.StreamUtil.RenderStreamFactory;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import static org.lwjgl.opengl.AMDPinnedMemory.*;
 import static org.lwjgl.opengl.GL15.*;
@@ -58,12 +54,14 @@ final class RenderStreamPBOAMD extends RenderStreamPBO {
 		}
 	};
 
-	private final GLSync[] fences;
+	private final GLSync[]       fences;
+	private final PinnedMemory[] memory;
 
 	RenderStreamPBOAMD(final StreamHandler handler, final int samples, final int transfersToBuffer) {
 		super(handler, samples, transfersToBuffer, ReadbackType.READ_PIXELS);
 
 		fences = new GLSync[this.transfersToBuffer];
+		memory = new PinnedMemory[this.transfersToBuffer];
 	}
 
 	protected void resizeBuffers(final int height, final int stride) {
@@ -75,14 +73,9 @@ final class RenderStreamPBOAMD extends RenderStreamPBO {
 			glBindBuffer(GL_EXTERNAL_VIRTUAL_MEMORY_BUFFER_AMD, pbos[i]);
 
 			// Pre-allocate page-aligned pinned buffers
-			final int PAGE_SIZE = PageSizeProvider.PAGE_SIZE;
+			memory[i] = new PinnedMemory(renderBytes);
 
-			final ByteBuffer buffer = BufferUtils.createByteBuffer(renderBytes + PAGE_SIZE);
-			final int pageOffset = (int)(MemoryUtil.getAddress(buffer) % PAGE_SIZE);
-			buffer.position(PAGE_SIZE - pageOffset); // Aligns to page
-			buffer.limit(buffer.capacity() - pageOffset); // Caps remaining() to renderBytes
-
-			pinnedBuffers[i] = buffer.slice().order(ByteOrder.nativeOrder());
+			pinnedBuffers[i] = memory[i].getBuffer();
 			glBufferData(GL_EXTERNAL_VIRTUAL_MEMORY_BUFFER_AMD, pinnedBuffers[i], GL_STREAM_READ);
 		}
 
@@ -92,6 +85,10 @@ final class RenderStreamPBOAMD extends RenderStreamPBO {
 	protected void readBack(final int index) {
 		super.readBack(index);
 
+		// A resize within the capacity abandons the buffers still being read, their fences were never waited on
+		if ( fences[index] != null )
+			glDeleteSync(fences[index]);
+
 		// Insert a fence after ReadPixels
 		fences[index] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
 	}
@@ -117,12 +114,29 @@ final class RenderStreamPBOAMD extends RenderStreamPBO {
 	}
 
 	protected void destroyObjects() {
+		// The retire fence follows these, the pinned memory is kept alive until it is signaled
 		for ( int i = 0; i < fences.length; i++ ) {
-			if ( fences[i] != null )
-				StreamUtil.waitOnFence(fences, i);
+			if ( fences[i] != null ) {
+				glDeleteSync(fences[i]);
+				fences[i] = null;
+			}
 		}
 
 		super.destroyObjects();
+
+		// Free the pinned memory once the buffers using it are deleted and the GPU is done writing into it. Trim and destroy
+		// reap the batch right away, blocking until then.
+		final boolean batch = !retired.isRetiring();
+		if ( batch )
+			retired.begin();
+		for ( int i = 0; i < memory.length; i++ ) {
+			if ( memory[i] != null ) {
+				retired.free(memory[i]);
+				memory[i] = null;
+			}
+		}
+		if ( batch )
+			retired.end();
 	}
 
 }
\ No newline at end of file
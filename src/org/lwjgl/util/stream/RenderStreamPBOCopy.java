@@ -108,8 +108,16 @@ final class RenderStreamPBOCopy extends RenderStreamPBO {
 		glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
 	}
 
+	public long getAllocatedBytes() {
+		final long bytes = super.getAllocatedBytes();
+		return bytes == 0 ? 0 : bytes + (long)capacityHeight * StreamUtil.getStride(capacityWidth);
+	}
+
 	protected void destroyObjects() {
-		glDeleteBuffers(devicePBO);
+		if ( devicePBO != 0 ) {
+			retired.buffer(devicePBO);
+			devicePBO = 0;
+		}
 		super.destroyObjects();
 	}
 }
\ No newline at end of file
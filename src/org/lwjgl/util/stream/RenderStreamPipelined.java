@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import org.lwjgl.LWJGLException;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.Drawable;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
+import org.lwjgl.opengl.SharedDrawable;
+import org.lwjgl.util.stream.StreamUtil.RenderStreamFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Reads frames back on a dedicated transfer thread, so the render thread only renders:
+ * <p/>
+ * - The render thread renders into one of <transfersToBuffer> framebuffers, puts a fence after it and queues the frame.
+ * - The transfer thread has its own context, shared with the render context. It makes the GPU wait on the fence, resolves
+ * MSAA, reads the frame back into a PBO, waits for the read and returns the framebuffer to the render thread.
+ * - The PBO is then mapped and handed to the handler, from the transfer thread.
+ * <p/>
+ * The render thread only blocks if all framebuffers are queued or being read back. Framebuffer objects are not shared between
+ * contexts, so the transfer thread attaches the shared renderbuffers to its own framebuffer for each frame.
+ */
+public final class RenderStreamPipelined extends StreamBuffered implements RenderStream {
+
+	/** Queued to stop the transfer thread after the frames before it. */
+	private static final Frame STOP = new Frame();
+	/** Queued to release the PBOs of the transfer thread. */
+	private static final Frame TRIM = new Frame();
+
+	private final StreamUtil.FBOUtil fboUtil;
+	private final int                samples;
+	private final int                maxRenderbufferSize;
+
+	private final SharedDrawable transferContext;
+	private final Thread         transferThread;
+
+	private final Frame[]              frames;
+	private final BlockingQueue<Frame> free;
+	private final BlockingQueue<Frame> rendered;
+
+	private volatile Throwable transferError;
+
+	private final AtomicBoolean trimQueued = new AtomicBoolean();
+
+	// Only accessed on the render thread
+	private Frame current;
+	private int   capacityWidth;
+	private int   capacityHeight;
+
+	// Only accessed on the transfer thread
+	private final int[] pbos;
+	private int         pboBytes;
+	private int         readFBO;
+	private int         resolveFBO;
+	private int         resolveBuffer;
+	private int         resolveWidth;
+	private int         resolveHeight;
+	private Frame       transferring;
+
+	/**
+	 * Returns a factory for pipelined streams whose transfer contexts share the objects of the given drawable. Streams must be
+	 * created on the thread the context of the drawable is current on.
+	 */
+	public static RenderStreamFactory getFactory(final Drawable drawable) {
+		return new RenderStreamFactory("Pipelined transfer thread") {
+			public boolean isSupported(final ContextCapabilities caps) {
+				return RenderStreamPBODefault.FACTORY.isSupported(caps) && (caps.OpenGL32 || caps.GL_ARB_sync);
+			}
+
+			public RenderStream create(final StreamHandler handler, final int samples, final int transfersToBuffer) {
+				return new RenderStreamPipelined(handler, samples, transfersToBuffer, drawable);
+			}
+		};
+	}
+
+	RenderStreamPipelined(final StreamHandler handler, final int samples, final int transfersToBuffer, final Drawable drawable) {
+		super(handler, transfersToBuffer);
+
+		final ContextCapabilities caps = GLContext.getCapabilities();
+
+		fboUtil = StreamUtil.getFBOUtil(caps);
+		this.samples = StreamUtil.checkSamples(samples, caps);
+		maxRenderbufferSize = glGetInteger(GL_MAX_RENDERBUFFER_SIZE);
+
+		frames = new Frame[transfersToBuffer];
+		free = new ArrayBlockingQueue<Frame>(transfersToBuffer);
+		// Room for all frames, a TRIM and the STOP. Only one TRIM is queued at a time.
+		rendered = new ArrayBlockingQueue<Frame>(transfersToBuffer + 2);
+		for ( int i = 0; i < frames.length; i++ ) {
+			frames[i] = new Frame();
+			frames[i].fbo = fboUtil.genFramebuffers();
+			free.add(frames[i]);
+		}
+
+		pbos = new int[transfersToBuffer];
+
+		try {
+			transferContext = new SharedDrawable(drawable);
+		} catch (LWJGLException e) {
+			throw new RuntimeException(e);
+		}
+
+		transferThread = new Thread(new Runnable() {
+			public void run() {
+				transferLoop();
+			}
+		}, "RenderStream transfer");
+		transferThread.setDaemon(true);
+		transferThread.start();
+	}
+
+	public StreamHandler getHandler() {
+		return handler;
+	}
+
+	/** Frames are never copied synchronously by this stream, there is nothing to skip. */
+	public void setResizeTransition(final boolean enabled) {
+	}
+
+	private void checkTransferError() {
+		final Throwable error = transferError;
+		if ( error != null )
+			throw new RuntimeException("The transfer thread failed.", error);
+	}
+
+	public void bind() {
+		checkTransferError();
+
+		if ( this.width != handler.getWidth() || this.height != handler.getHeight() ) {
+			resize(handler.getWidth(), handler.getHeight());
+			reportAllocation(getAllocatedBytes());
+		}
+
+		if ( width == 0 || height == 0 ) {
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+			return;
+		}
+
+		if ( current == null )
+			current = acquire();
+
+		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, current.fbo);
+	}
+
+	public void swapBuffers() {
+		checkTransferError();
+
+		if ( current == null )
+			return;
+
+		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+
+		current.width = width;
+		current.height = height;
+		current.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		// The fence has to reach the GPU before the transfer context can wait on it
+		glFlush();
+
+		rendered.add(current);
+		current = null;
+	}
+
+	/** Takes a framebuffer that is not queued or being read back. A wait longer than the stall budget is recorded. */
+	private Frame acquire() {
+		Frame frame = free.poll();
+		if ( frame != null )
+			return deleteFence(frame);
+
+		final long start = System.nanoTime();
+		final long budget = StallMonitor.getBudget();
+		if ( 0 <= budget ) {
+			frame = pollUninterruptibly(budget);
+			if ( frame != null )
+				return deleteFence(frame);
+		}
+
+		frame = pollUninterruptibly(-1);
+		if ( 0 <= budget )
+			StallMonitor.record(System.nanoTime() - start, -1, slots.toString(), false);
+		return deleteFence(frame);
+	}
+
+	/** Deletes the fence of a frame that the transfer thread returned without deleting it, see {@link #recycle}. */
+	private static Frame deleteFence(final Frame frame) {
+		if ( frame.fence != null ) {
+			glDeleteSync(frame.fence);
+			frame.fence = null;
+		}
+		return frame;
+	}
+
+	private Frame pollUninterruptibly(final long timeout) {
+		boolean interrupted = false;
+		try {
+			while ( true ) {
+				try {
+					return timeout < 0 ? free.take() : free.poll(timeout, TimeUnit.NANOSECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Waits until the transfer thread is done with all frames and takes them. */
+	private List<Frame> acquireAll() {
+		final List<Frame> all = new ArrayList<Frame>(frames.length);
+		if ( current != null ) {
+			all.add(current);
+			current = null;
+		}
+		while ( all.size() < frames.length ) {
+			checkTransferError();
+			all.add(acquire());
+		}
+		return all;
+	}
+
+	private void resize(final int width, final int height) {
+		if ( width < 0 || height < 0 )
+			throw new IllegalArgumentException("Invalid dimensions: " + width + " x " + height);
+
+		// Queued frames keep their own size, only the framebuffers have to be large enough
+		if ( width <= capacityWidth && height <= capacityHeight ) {
+			this.width = width;
+			this.height = height;
+			this.stride = StreamUtil.getStride(width);
+			return;
+		}
+
+		final int capacityWidth = StreamUtil.getCapacity(width, this.capacityWidth, maxRenderbufferSize);
+		final int capacityHeight = StreamUtil.getCapacity(height, this.capacityHeight, maxRenderbufferSize);
+
+		final List<Frame> all = acquireAll();
+
+		destroyRenderTargets();
+
+		this.width = width;
+		this.height = height;
+		this.stride = StreamUtil.getStride(width);
+
+		if ( width != 0 && height != 0 ) {
+			this.capacityWidth = capacityWidth;
+			this.capacityHeight = capacityHeight;
+
+			for ( Frame frame : frames ) {
+				fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, frame.fbo);
+				fboUtil.framebufferRenderbuffer(
+					GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER,
+					frame.color = StreamUtil.createRenderBuffer(fboUtil, capacityWidth, capacityHeight, samples, GL_RGBA8)
+				);
+				fboUtil.framebufferRenderbuffer(
+					GL_DRAW_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER,
+					frame.depth = StreamUtil.createRenderBuffer(fboUtil, capacityWidth, capacityHeight, samples, GL_DEPTH24_STENCIL8)
+				);
+			}
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+		}
+
+		free.addAll(all);
+	}
+
+	/** Deletes the render targets of all frames, which must not be queued. */
+	private void destroyRenderTargets() {
+		for ( Frame frame : frames ) {
+			if ( frame.color != 0 ) {
+				fboUtil.deleteRenderbuffers(frame.color);
+				fboUtil.deleteRenderbuffers(frame.depth);
+				frame.color = frame.depth = 0;
+			}
+		}
+		capacityWidth = capacityHeight = 0;
+	}
+
+	public void trim() {
+		if ( capacityWidth == 0 )
+			return;
+
+		final List<Frame> all = acquireAll();
+		destroyRenderTargets();
+		free.addAll(all);
+
+		width = height = stride = 0;
+		// A pending TRIM has no frames behind it, acquireAll would have waited for them. It releases the same objects.
+		if ( trimQueued.compareAndSet(false, true) )
+			rendered.add(TRIM);
+		reportAllocation(0);
+	}
+
+	public long getAllocatedBytes() {
+		if ( width == 0 || height == 0 )
+			return 0;
+
+		final long pixels = (long)capacityWidth * capacityHeight;
+
+		long bytes = (long)transfersToBuffer * capacityHeight * StreamUtil.getStride(capacityWidth); // Read-back buffers
+		bytes += (long)frames.length * pixels * 4 * Math.max(samples, 1) * 2; // Color and depth/stencil
+		if ( 1 < samples )
+			bytes += pixels * 4; // MSAA resolve
+
+		return bytes;
+	}
+
+	public void destroy() {
+		if ( current != null ) {
+			free.add(current);
+			current = null;
+		}
+
+		// The transfer thread completes the queued frames first
+		rendered.add(STOP);
+		boolean interrupted = false;
+		while ( transferThread.isAlive() ) {
+			try {
+				transferThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+
+		destroyRenderTargets();
+		for ( Frame frame : frames ) {
+			deleteFence(frame);
+			fboUtil.deleteFramebuffers(frame.fbo);
+		}
+
+		reportAllocation(0);
+	}
+
+	// Transfer thread
+
+	private void transferLoop() {
+		boolean contextCurrent = false;
+		try {
+			transferContext.makeCurrent();
+			contextCurrent = true;
+			final StreamUtil.FBOUtil fboUtil = StreamUtil.getFBOUtil(GLContext.getCapabilities());
+
+			readFBO = fboUtil.genFramebuffers();
+			try {
+				Frame frame;
+				while ( (frame = rendered.take()) != STOP ) {
+					if ( frame == TRIM ) {
+						trimQueued.set(false);
+						destroyTransferObjects(fboUtil);
+					}
+					else {
+						transferring = frame;
+						transfer(fboUtil, frame);
+					}
+				}
+			} finally {
+				destroyTransferObjects(fboUtil);
+				fboUtil.deleteFramebuffers(readFBO);
+				if ( resolveFBO != 0 )
+					fboUtil.deleteFramebuffers(resolveFBO);
+			}
+		} catch (Throwable t) {
+			transferError = t;
+			if ( transferring != null )
+				recycle(transferring, contextCurrent);
+			// Keep returning the frames, so the render thread does not block before it sees the error
+			try {
+				Frame frame;
+				while ( (frame = rendered.take()) != STOP ) {
+					if ( frame != TRIM )
+						recycle(frame, contextCurrent);
+				}
+			} catch (InterruptedException e) {
+				// Exit
+			}
+		} finally {
+			try {
+				transferContext.releaseContext();
+			} catch (LWJGLException e) {
+				// The context is destroyed anyway
+			}
+			transferContext.destroy();
+		}
+	}
+
+	/** Returns a frame that was not transferred. Its fence is deleted, unless the transfer context could not be made current. */
+	private void recycle(final Frame frame, final boolean contextCurrent) {
+		if ( frame.fence != null && contextCurrent ) {
+			glDeleteSync(frame.fence);
+			frame.fence = null;
+		}
+		transferring = null;
+		free.add(frame);
+	}
+
+	private void transfer(final StreamUtil.FBOUtil fboUtil, final Frame frame) {
+		// Let the GPU wait for the render thread's commands, without blocking this thread
+		glWaitSync(frame.fence, 0, GL_TIMEOUT_IGNORED);
+		glDeleteSync(frame.fence);
+		frame.fence = null;
+
+		final int width = frame.width;
+		final int height = frame.height;
+		final int stride = StreamUtil.getStride(width);
+
+		if ( pboBytes < height * stride )
+			resizeTransferBuffers(height * stride);
+
+		final int trgPBO = (int)(bufferIndex % transfersToBuffer);
+
+		// Back-pressure. Make sure we never buffer more than <transfersToBuffer> frames ahead.
+		if ( slots.isHandedOff(trgPBO) )
+			waitForProcessingToComplete(trgPBO);
+
+		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, readFBO);
+		fboUtil.framebufferRenderbuffer(GL_READ_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, frame.color);
+
+		if ( 1 < samples ) {
+			// Resolve MSAA
+			if ( resolveWidth < width || resolveHeight < height )
+				resizeResolveBuffer(fboUtil, width, height);
+
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, resolveFBO);
+			fboUtil.blitFramebuffer(0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+			fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+			fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, resolveFBO);
+		}
+
+		glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[trgPBO]);
+		glPixelStorei(GL_PACK_ROW_LENGTH, stride >> 2);
+		glReadPixels(0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, 0);
+		glPixelStorei(GL_PACK_ROW_LENGTH, 0);
+
+		// Detach the renderbuffer, the render thread may delete it
+		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, readFBO);
+		fboUtil.framebufferRenderbuffer(GL_READ_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, 0);
+		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
+
+		final GLSync read = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		glClientWaitSync(read, GL_SYNC_FLUSH_COMMANDS_BIT, GL_TIMEOUT_IGNORED);
+		glDeleteSync(read);
+
+		// The frame has been read, the render thread can render into it again
+		transferring = null;
+		free.add(frame);
+
+		pinnedBuffers[trgPBO] = glMapBuffer(GL_PIXEL_PACK_BUFFER, GL_READ_ONLY, pboBytes, pinnedBuffers[trgPBO]);
+		glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+		slots.set(trgPBO, StreamSlots.PINNED);
+
+		// Send the buffer for processing
+
+		handler.process(
+			width, height,
+			pinnedBuffers[trgPBO],
+			stride,
+			slots.process(trgPBO)
+		);
+
+		bufferIndex++;
+	}
+
+	private void resizeTransferBuffers(final int bytes) {
+		waitForTransfers();
+
+		for ( int i = 0; i < pbos.length; i++ ) {
+			if ( pbos[i] == 0 )
+				pbos[i] = glGenBuffers();
+
+			glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+			glBufferData(GL_PIXEL_PACK_BUFFER, bytes, GL_STREAM_READ);
+
+			pinnedBuffers[i] = null;
+		}
+		glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+		pboBytes = bytes;
+	}
+
+	private void resizeResolveBuffer(final StreamUtil.FBOUtil fboUtil, final int width, final int height) {
+		if ( resolveFBO == 0 )
+			resolveFBO = fboUtil.genFramebuffers();
+		if ( resolveBuffer != 0 )
+			fboUtil.deleteRenderbuffers(resolveBuffer);
+
+		resolveWidth = StreamUtil.getCapacity(width, resolveWidth, maxRenderbufferSize);
+		resolveHeight = StreamUtil.getCapacity(height, resolveHeight, maxRenderbufferSize);
+
+		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, resolveFBO);
+		fboUtil.framebufferRenderbuffer(
+			GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER,
+			resolveBuffer = StreamUtil.createRenderBuffer(fboUtil, resolveWidth, resolveHeight, GL_RGBA8)
+		);
+		fboUtil.bindFramebuffer(GL_DRAW_FRAMEBUFFER, 0);
+	}
+
+	/** Waits until the handler is done with all buffers. */
+	private void waitForTransfers() {
+		for ( int i = 0; i < transfersToBuffer; i++ ) {
+			if ( slots.isHandedOff(i) )
+				waitForProcessingToComplete(i);
+		}
+		slots.reset();
+	}
+
+	private void destroyTransferObjects(final StreamUtil.FBOUtil fboUtil) {
+		waitForTransfers();
+
+		for ( int i = 0; i < pbos.length; i++ ) {
+			if ( pbos[i] != 0 ) {
+				glDeleteBuffers(pbos[i]);
+				pbos[i] = 0;
+			}
+			pinnedBuffers[i] = null;
+		}
+		pboBytes = 0;
+
+		if ( resolveBuffer != 0 ) {
+			fboUtil.deleteRenderbuffers(resolveBuffer);
+			resolveBuffer = 0;
+			resolveWidth = resolveHeight = 0;
+		}
+	}
+
+	protected void postProcess(final int index) {
+		glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[index]);
+		glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+		glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+	}
+
+	/** A framebuffer of the render thread and the size of the frame rendered into it. */
+	private static final class Frame {
+
+		int fbo;
+		int color;
+		int depth;
+
+		int    width;
+		int    height;
+		GLSync fence;
+
+	}
+
+}
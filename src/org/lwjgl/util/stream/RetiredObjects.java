@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Defers the deletion of GL objects that the GPU may still be using. Objects are collected in a batch, the batch is fenced
+ * and its objects are deleted once a later {@link #reap(boolean)} sees the fence signaled. Client memory used by the objects
+ * (e.g. AMD_pinned_memory buffers) is kept reachable until then.
+ * <p/>
+ * Without sync object support, batches are deleted immediately.
+ */
+final class RetiredObjects {
+
+	private final StreamUtil.FBOUtil fboUtil;
+	private final boolean            useFences;
+
+	private final List<Batch> batches = new ArrayList<Batch>();
+
+	private Batch current;
+
+	RetiredObjects(final StreamUtil.FBOUtil fboUtil) {
+		this.fboUtil = fboUtil;
+
+		final ContextCapabilities caps = GLContext.getCapabilities();
+		this.useFences = caps.OpenGL32 || caps.GL_ARB_sync;
+	}
+
+	/** Starts collecting objects. Until {@link #end()} is called, {@link #isRetiring()} returns true. */
+	void begin() {
+		current = new Batch();
+	}
+
+	boolean isRetiring() {
+		return current != null;
+	}
+
+	void buffer(final int buffer) {
+		if ( current == null )
+			glDeleteBuffers(buffer);
+		else
+			current.buffers.add(buffer);
+	}
+
+	void renderbuffer(final int renderbuffer) {
+		if ( current == null )
+			fboUtil.deleteRenderbuffers(renderbuffer);
+		else
+			current.renderbuffers.add(renderbuffer);
+	}
+
+	void texture(final int texture) {
+		if ( current == null )
+			glDeleteTextures(texture);
+		else
+			current.textures.add(texture);
+	}
+
+	void memory(final ByteBuffer memory) {
+		if ( current != null && memory != null )
+			current.memory.add(memory);
+	}
+
+	/**
+	 * Frees the pinned memory once the GPU is done with it. Outside a batch this blocks until all previous commands have
+	 * completed, open a batch to free several buffers without blocking.
+	 */
+	void free(final PinnedMemory memory) {
+		if ( current == null ) {
+			// A glWaitSync on an earlier fence only makes the GPU wait, the GPU may still write into the memory
+			glFinish();
+			memory.free();
+		} else
+			current.pinnedMemory.add(memory);
+	}
+
+	/** Fences the collected objects. */
+	void end() {
+		final Batch batch = current;
+		current = null;
+
+		if ( useFences ) {
+			batch.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+			batches.add(batch);
+		} else
+			batch.delete();
+	}
+
+	/**
+	 * Deletes the batches that the GPU is done with.
+	 *
+	 * @param wait if true, blocks until all batches can be deleted
+	 */
+	void reap(final boolean wait) {
+		for ( Iterator<Batch> it = batches.iterator(); it.hasNext(); ) {
+			final Batch batch = it.next();
+
+			final int status = glClientWaitSync(batch.fence, wait ? GL_SYNC_FLUSH_COMMANDS_BIT : 0, wait ? GL_TIMEOUT_IGNORED : 0);
+			if ( status == GL_TIMEOUT_EXPIRED )
+				continue;
+
+			glDeleteSync(batch.fence);
+			batch.delete();
+			it.remove();
+		}
+	}
+
+	private final class Batch {
+
+		final List<Integer>      buffers       = new ArrayList<Integer>();
+		final List<Integer>      renderbuffers = new ArrayList<Integer>();
+		final List<Integer>      textures      = new ArrayList<Integer>();
+		final List<ByteBuffer>   memory        = new ArrayList<ByteBuffer>();
+		final List<PinnedMemory> pinnedMemory  = new ArrayList<PinnedMemory>();
+
+		GLSync fence;
+
+		void delete() {
+			for ( Integer buffer : buffers )
+				glDeleteBuffers(buffer);
+			for ( Integer renderbuffer : renderbuffers )
+				fboUtil.deleteRenderbuffers(renderbuffer);
+			for ( Integer texture : textures )
+				glDeleteTextures(texture);
+			memory.clear();
+			for ( PinnedMemory pinned : pinnedMemory )
+				pinned.free();
+		}
+
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Records the render thread stalls caused by stream back-pressure. A stream waits at most {@link #getBudget()} nanoseconds for
+ * its handler to finish processing a buffer. When the budget is exceeded, the frame is skipped and a {@link Stall} is recorded
+ * and passed to the {@link Listener}, if one is set. Waits that cannot be skipped (resize and destroy) continue, but are
+ * recorded as well. Nothing is printed, a blocked handler can stall every frame.
+ */
+public final class StallMonitor {
+
+	private static final int MAX_STALLS = 64;
+
+	private static volatile long   budget = 250L * 1000 * 1000;
+	private static volatile Thread dumpThread;
+	private static volatile Listener listener;
+
+	private static final LinkedList<Stall> stalls = new LinkedList<Stall>();
+
+	private static long stallCount;
+
+	private StallMonitor() {
+	}
+
+	/** Returns the time in nanoseconds a stream may wait for its handler before the frame is skipped. */
+	public static long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the time a stream may wait for its handler before the frame is skipped.
+	 *
+	 * @param nanos the budget in nanoseconds, or a negative value to wait indefinitely
+	 */
+	public static void setBudget(final long nanos) {
+		budget = nanos;
+	}
+
+	/**
+	 * Sets the thread whose stack trace is captured with every stall, usually the thread the handler processes buffers on.
+	 *
+	 * @param thread the thread, or null to not capture stack traces
+	 */
+	public static void setDumpThread(final Thread thread) {
+		dumpThread = thread;
+	}
+
+	/**
+	 * Sets the listener that is notified of every stall.
+	 *
+	 * @param listener the listener, or null to only record stalls
+	 */
+	public static void setListener(final Listener listener) {
+		StallMonitor.listener = listener;
+	}
+
+	/** Returns the number of stalls recorded since start-up. */
+	public static synchronized long getStallCount() {
+		return stallCount;
+	}
+
+	/** Returns the most recent stalls, oldest first. */
+	public static synchronized List<Stall> getStalls() {
+		return new ArrayList<Stall>(stalls);
+	}
+
+	public static synchronized void clear() {
+		stalls.clear();
+	}
+
+	static void record(final long duration, final int slot, final String slotStates, final boolean skipped) {
+		final Thread thread = dumpThread;
+		final Stall stall = new Stall(System.currentTimeMillis(), duration, slot, slotStates, skipped, thread == null ? null : thread.getStackTrace());
+
+		synchronized ( StallMonitor.class ) {
+			if ( stalls.size() == MAX_STALLS )
+				stalls.removeFirst();
+			stalls.add(stall);
+			stallCount++;
+		}
+
+		final Listener listener = StallMonitor.listener;
+		if ( listener != null )
+			listener.stalled(stall);
+	}
+
+	/** Receives the recorded stalls. */
+	public interface Listener {
+
+		/** Called on the thread that stalled, after the stall has been recorded. */
+		void stalled(Stall stall);
+
+	}
+
+	/** A wait on the stream handler that exceeded the budget. */
+	public static final class Stall {
+
+		private final long                time;
+		private final long                duration;
+		private final int                 slot;
+		private final String              slotStates;
+		private final boolean             skipped;
+		private final StackTraceElement[] stackTrace;
+
+		Stall(final long time, final long duration, final int slot, final String slotStates, final boolean skipped, final StackTraceElement[] stackTrace) {
+			this.time = time;
+			this.duration = duration;
+			this.slot = slot;
+			this.slotStates = slotStates;
+			this.skipped = skipped;
+			this.stackTrace = stackTrace;
+		}
+
+		/** Returns the time the stall was recorded, in milliseconds since the epoch. */
+		public long getTime() {
+			return time;
+		}
+
+		/** Returns the time in nanoseconds the render thread waited. */
+		public long getDuration() {
+			return duration;
+		}
+
+		/** Returns the buffer that was waited on. */
+		public int getSlot() {
+			return slot;
+		}
+
+		/** Returns the state of every buffer when the stall was recorded. See {@link StreamSlots#toString()}. */
+		public String getSlotStates() {
+			return slotStates;
+		}
+
+		/** Returns true if the frame was skipped, false if the wait continued. */
+		public boolean isSkipped() {
+			return skipped;
+		}
+
+		/** Returns the stack trace of the dump thread, or null if none was set. */
+		public StackTraceElement[] getStackTrace() {
+			return stackTrace;
+		}
+
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(128);
+			sb.append("Stream stall: waited ").append(duration / 1000000).append("ms on buffer ").append(slot)
+				.append(' ').append(slotStates)
+				.append(skipped ? ", frame skipped" : ", waited for completion");
+
+			if ( stackTrace != null ) {
+				for ( StackTraceElement element : stackTrace )
+					sb.append("\n\tat ").append(element);
+			}
+
+			return sb.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the GPU and pinned memory of all streams against a shared cap. Every stream reports its allocation to an
+ * {@link Account}, usually one per view. When the total exceeds the cap, the account with the lowest priority (the largest
+ * one among equal priorities) is degraded one level, and its {@link Degrader} applies the level by recreating its streams
+ * with fewer resources. That allocation is reported again, so degradation continues step by step until the total fits or
+ * nothing can be degraded any more. When the cap changes or an account is closed, degraded accounts are raised again one
+ * level at a time, highest priority first, as long as the total projected from the allocation they last reported at that
+ * level fits the cap. If nothing is left to degrade, the {@link Listener} is notified once, until the total fits the cap again.
+ */
+public final class StreamBudget {
+
+	/** Nothing degraded. */
+	public static final int LEVEL_FULL    = 0;
+	/** Multisampling disabled. */
+	public static final int LEVEL_NO_MSAA = 1;
+	/** Multisampling disabled and the minimum number of transfer buffers. */
+	public static final int LEVEL_MINIMAL = 2;
+
+	private static final List<Account> accounts = new ArrayList<Account>();
+
+	private static long    cap = -1;
+	private static boolean warned;
+
+	private static volatile Listener listener;
+
+	private StreamBudget() {
+	}
+
+	/**
+	 * Opens a new account.
+	 *
+	 * @param name     a name for diagnostics
+	 * @param priority accounts with lower priorities are degraded first
+	 * @param degrader applies degradation levels to the streams of the account, may be null if they cannot be degraded
+	 */
+	public static Account open(final String name, final int priority, final Degrader degrader) {
+		final Account account = new Account(name, priority, degrader);
+		synchronized ( StreamBudget.class ) {
+			accounts.add(account);
+		}
+		return account;
+	}
+
+	public static synchronized long getCap() {
+		return cap;
+	}
+
+	/**
+	 * Sets the total number of bytes all streams may allocate. Degraded accounts are raised as far as the new cap allows, or
+	 * all of them to the full level if there is no cap.
+	 *
+	 * @param bytes the cap, or a negative value for no cap
+	 */
+	public static void setCap(final long bytes) {
+		synchronized ( StreamBudget.class ) {
+			cap = bytes < 0 ? -1 : bytes;
+		}
+		restore();
+	}
+
+	/**
+	 * Sets the listener that is notified when the cap is exceeded and no stream can be degraded.
+	 *
+	 * @param listener the listener, or null to ignore it
+	 */
+	public static void setListener(final Listener listener) {
+		StreamBudget.listener = listener;
+	}
+
+	/** Returns the bytes currently allocated by all accounts. */
+	public static synchronized long getUsage() {
+		long total = 0;
+		for ( Account account : accounts )
+			total += account.bytes;
+		return total;
+	}
+
+	/** Returns the open accounts. */
+	public static synchronized List<Account> getAccounts() {
+		return new ArrayList<Account>(accounts);
+	}
+
+	private static void report(final Account account, final long bytes) {
+		final Account victim;
+		final long total;
+		final long limit;
+		synchronized ( StreamBudget.class ) {
+			account.bytes = bytes;
+			// Trimmed streams report 0, that is no projection for the level
+			if ( 0 < bytes )
+				account.levelBytes[account.level] = bytes;
+
+			total = getUsage();
+			limit = cap;
+			if ( limit < 0 || total <= limit ) {
+				warned = false;
+				return;
+			}
+
+			victim = getVictim();
+			if ( victim == null ) {
+				if ( warned )
+					return;
+				warned = true;
+			} else
+				victim.level++;
+		}
+
+		if ( victim != null ) {
+			victim.degrader.setLevel(victim.level);
+			return;
+		}
+
+		final Listener listener = StreamBudget.listener;
+		if ( listener != null )
+			listener.exceeded(total, limit);
+	}
+
+	private static Account getVictim() {
+		Account victim = null;
+		for ( Account a : accounts ) {
+			if ( a.degrader == null || a.level == LEVEL_MINIMAL || a.bytes == 0 )
+				continue;
+
+			if ( victim == null || a.priority < victim.priority || (a.priority == victim.priority && victim.bytes < a.bytes) )
+				victim = a;
+		}
+		return victim;
+	}
+
+	/**
+	 * Raises degraded accounts one level at a time while the projected total fits the cap. Raising an account to a level it
+	 * has not reported an allocation at yet cannot be projected, it is left degraded.
+	 */
+	private static void restore() {
+		final List<Account> restored = new ArrayList<Account>();
+		synchronized ( StreamBudget.class ) {
+			Account a;
+			while ( (a = getRaisable()) != null ) {
+				a.level--;
+				a.bytes = a.levelBytes[a.level];
+				if ( !restored.contains(a) )
+					restored.add(a);
+			}
+			warned = false;
+		}
+
+		// The streams report their actual allocation when the level is applied, which degrades them again if the projection was
+		// too low
+		for ( Account a : restored )
+			a.degrader.setLevel(a.getLevel());
+	}
+
+	/** Returns the degraded account with the highest priority (the smallest one among equal priorities) that fits one level up. */
+	private static Account getRaisable() {
+		final long total = getUsage();
+
+		Account raisable = null;
+		for ( Account a : accounts ) {
+			if ( a.level == LEVEL_FULL )
+				continue;
+
+			final long bytes = a.levelBytes[a.level - 1];
+			if ( 0 <= cap && (bytes == 0 || cap < total - a.bytes + bytes) )
+				continue;
+
+			if ( raisable == null || raisable.priority < a.priority || (a.priority == raisable.priority && a.bytes < raisable.bytes) )
+				raisable = a;
+		}
+		return raisable;
+	}
+
+	/** Receives the budget overruns that cannot be resolved by degrading streams. */
+	public interface Listener {
+
+		/** Called on the thread that reported the allocation, outside the lock of the budget. */
+		void exceeded(long usage, long cap);
+
+	}
+
+	/** Applies degradation levels to the streams of an account. Called on the thread that reported the allocation. */
+	public interface Degrader {
+
+		void setLevel(int level);
+
+	}
+
+	/** The allocation of a group of streams. */
+	public static final class Account {
+
+		private final String   name;
+		private final Degrader degrader;
+
+		private int  priority;
+		private int  level;
+		private long bytes;
+
+		/** The last allocation reported at each level, 0 if none. */
+		private final long[] levelBytes = new long[LEVEL_MINIMAL + 1];
+
+		Account(final String name, final int priority, final Degrader degrader) {
+			this.name = name;
+			this.priority = priority;
+			this.degrader = degrader;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getPriority() {
+			synchronized ( StreamBudget.class ) {
+				return priority;
+			}
+		}
+
+		public void setPriority(final int priority) {
+			synchronized ( StreamBudget.class ) {
+				this.priority = priority;
+			}
+		}
+
+		/** Returns the current degradation level, one of the LEVEL_ constants. */
+		public int getLevel() {
+			synchronized ( StreamBudget.class ) {
+				return level;
+			}
+		}
+
+		/** Returns the bytes last reported for this account. */
+		public long getBytes() {
+			synchronized ( StreamBudget.class ) {
+				return bytes;
+			}
+		}
+
+		/** Reports the bytes currently allocated by the streams of this account. */
+		public void report(final long bytes) {
+			StreamBudget.report(this, bytes);
+		}
+
+		/** Removes the account from the budget. Raises the remaining accounts as far as the freed bytes allow. */
+		public void close() {
+			synchronized ( StreamBudget.class ) {
+				accounts.remove(this);
+			}
+			restore();
+		}
+
+		public String toString() {
+			return name + ": " + bytes + " bytes, priority " + priority + ", level " + level;
+		}
+
+	}
+
+}
@@ -32,8 +32,6 @@
 package org.lwjgl.util.stream;
 
 import java.nio.ByteBuffer;
-import java.util.BitSet;
-import java.util.concurrent.Semaphore;
 
 /** Base functionality for buffered transfers. */
 abstract class StreamBuffered {
@@ -45,13 +43,7 @@ abstract class StreamBuffered {
 	protected final int transfersToBuffer; // 3 provides optimal concurrency in most cases
 
 	protected final ByteBuffer[] pinnedBuffers;
-	protected final Semaphore[]  semaphores; // Required for synchronization with the processing thread
-
-	/**
-	 * A flag per pinned buffer that indicates if it's currently being
-	 * processed by the handler.
-	 */
-	protected final BitSet processingState;
+	protected final StreamSlots  slots; // Required for synchronization with the processing thread
 
 	protected int width;
 	protected int height;
@@ -59,30 +51,66 @@ abstract class StreamBuffered {
 
 	protected long bufferIndex;
 
+	private StreamBudget.Account budgetAccount;
+
 	protected StreamBuffered(final StreamHandler handler, final int transfersToBuffer) {
 		this.handler = handler;
 		this.transfersToBuffer = transfersToBuffer;
 
 		pinnedBuffers = new ByteBuffer[transfersToBuffer];
-		semaphores = new Semaphore[transfersToBuffer];
-		for ( int i = 0; i < semaphores.length; i++ )
-			semaphores[i] = new Semaphore(1, false);
+		slots = new StreamSlots(transfersToBuffer);
+	}
 
-		processingState = new BitSet(transfersToBuffer);
+	/** Sets the account this stream reports its allocations to, or null to not report them. */
+	public void setBudgetAccount(final StreamBudget.Account account) {
+		this.budgetAccount = account;
+		reportAllocation(getAllocatedBytes());
 	}
 
+	public abstract long getAllocatedBytes();
+
+	protected void reportAllocation(final long bytes) {
+		if ( budgetAccount != null )
+			budgetAccount.report(bytes);
+	}
+
+	/**
+	 * Waits until the handler has finished processing the specified buffer. A wait longer than the {@link StallMonitor} budget
+	 * is recorded as a stall, but continues until processing has completed.
+	 */
 	protected void waitForProcessingToComplete(final int index) {
-		final Semaphore s = semaphores[index];
-		// Early-out: start-up or handler has finished processing
-		if ( s.availablePermits() == 0 ) {
-			// This will block until handler has finished processing
-			s.acquireUninterruptibly();
-			// Give the permit back
-			s.release();
+		// Early-out: handler has finished processing
+		if ( !slots.isDone(index) ) {
+			final long budget = StallMonitor.getBudget();
+			if ( budget < 0 || !slots.await(index, budget) ) {
+				final long start = System.nanoTime() - Math.max(budget, 0);
+				// This will block until handler has finished processing
+				slots.await(index, -1);
+				if ( 0 <= budget )
+					StallMonitor.record(System.nanoTime() - start, index, slots.toString(), false);
+			}
+		}
+
+		postProcess(index);
+		slots.set(index, StreamSlots.FREE);
+	}
+
+	/**
+	 * Like {@link #waitForProcessingToComplete(int)}, but gives up after the {@link StallMonitor} budget. The caller is
+	 * expected to skip the current frame in that case and try again with the next.
+	 *
+	 * @return false if the handler is still processing the buffer
+	 */
+	protected boolean tryWaitForProcessingToComplete(final int index) {
+		final long budget = StallMonitor.getBudget();
+		if ( !slots.await(index, budget) ) {
+			StallMonitor.record(budget, index, slots.toString(), true);
+			return false;
 		}
 
 		postProcess(index);
-		processingState.set(index, false);
+		slots.set(index, StreamSlots.FREE);
+		return true;
 	}
 
 	protected abstract void postProcess(int index);
@@ -32,7 +32,6 @@
 package org.lwjgl.util.stream;
 
 import java.nio.ByteBuffer;
-import java.util.concurrent.Semaphore;
 
 /** @author Spasi */
 public interface StreamHandler {
@@ -41,6 +40,6 @@ public interface StreamHandler {
 
 	int getHeight();
 
-	void process(final int width, final int height, ByteBuffer data, final int stride, Semaphore signal);
+	void process(final int width, final int height, ByteBuffer data, final int stride, StreamSlots.Signal signal);
 
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The hand-off state of the buffers of a stream. Every buffer moves through FREE, READING (a transfer into it is pending),
+ * PINNED (its memory is accessible), PROCESSING (the handler owns it) and DONE (the handler has released it) and back to
+ * FREE. All transitions but PROCESSING to DONE happen on the stream's thread. The handler completes its part with
+ * {@link Signal#release()}, which wakes the stream thread only if it is actually waiting.
+ */
+public final class StreamSlots {
+
+	static final int FREE       = 0;
+	static final int READING    = 1;
+	static final int PINNED     = 2;
+	static final int PROCESSING = 3;
+	static final int DONE       = 4;
+
+	private static final char[] STATE_CHARS = { '-', 'R', 'M', 'P', 'D' };
+
+	private final AtomicIntegerArray states;
+	private final Signal[]           signals;
+
+	private volatile Thread waiter;
+
+	StreamSlots(final int count) {
+		states = new AtomicIntegerArray(count);
+		signals = new Signal[count];
+		for ( int i = 0; i < count; i++ )
+			signals[i] = new Signal(i);
+	}
+
+	int get(final int index) {
+		return states.get(index);
+	}
+
+	/** Moves a buffer to a state owned by the stream thread. Publishes all writes that happened before. */
+	void set(final int index, final int state) {
+		states.lazySet(index, state);
+	}
+
+	/** Returns true if the buffer has been sent to the handler and has not been reclaimed yet. */
+	boolean isHandedOff(final int index) {
+		return PROCESSING <= states.get(index);
+	}
+
+	/** Returns true if the handler has released the buffer. */
+	boolean isDone(final int index) {
+		return states.get(index) == DONE;
+	}
+
+	/** Hands the buffer off to the handler. */
+	Signal process(final int index) {
+		states.set(index, PROCESSING);
+		return signals[index];
+	}
+
+	/** Resets all buffers to FREE. None may be handed off. */
+	void reset() {
+		for ( int i = 0; i < states.length(); i++ )
+			states.lazySet(i, FREE);
+	}
+
+	/**
+	 * Parks the stream thread until the handler has released the buffer.
+	 *
+	 * @param index   the buffer
+	 * @param timeout the maximum time to wait in nanoseconds, or a negative value to wait indefinitely
+	 *
+	 * @return true if the buffer is DONE, false if the timeout expired
+	 */
+	boolean await(final int index, final long timeout) {
+		if ( states.get(index) == DONE )
+			return true;
+
+		final long deadline = System.nanoTime() + timeout;
+
+		boolean interrupted = false;
+		waiter = Thread.currentThread();
+		try {
+			// The waiter is published before the state is checked again, so a release in between always unparks us.
+			while ( states.get(index) != DONE ) {
+				if ( timeout < 0 )
+					LockSupport.park(this);
+				else {
+					final long remaining = deadline - System.nanoTime();
+					if ( remaining <= 0 )
+						return false;
+					LockSupport.parkNanos(this, remaining);
+				}
+
+				// Clear the flag, park returns immediately while it is set
+				if ( Thread.interrupted() )
+					interrupted = true;
+			}
+			return true;
+		} finally {
+			waiter = null;
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private void release(final int index) {
+		if ( !states.compareAndSet(index, PROCESSING, DONE) )
+			throw new IllegalStateException("Buffer " + index + " is not being processed: " + STATE_CHARS[states.get(index)]);
+
+		final Thread waiter = this.waiter;
+		if ( waiter != null )
+			LockSupport.unpark(waiter);
+	}
+
+	/** Returns the state of every buffer, '-' FREE, 'R' READING, 'M' PINNED, 'P' PROCESSING and 'D' DONE. */
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(states.length() + 2);
+		sb.append('[');
+		for ( int i = 0; i < states.length(); i++ )
+			sb.append(STATE_CHARS[states.get(i)]);
+		return sb.append(']').toString();
+	}
+
+	/** Passed to the {@link StreamHandler} with a buffer. Must be released exactly once, when the handler is done with it. */
+	public final class Signal {
+
+		private final int index;
+
+		Signal(final int index) {
+			this.index = index;
+		}
+
+		public void release() {
+			StreamSlots.this.release(index);
+		}
+
+	}
+
+}
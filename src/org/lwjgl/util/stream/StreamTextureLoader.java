@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import org.lwjgl.util.stream.StreamUtil.TextureStreamFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads textures through {@link TextureStream}s without copying the pixels on the heap. Every texture gets a stream with a
+ * single transfer buffer. The buffer is mapped on the render thread, a {@link PixelDecoder} writes the image into it on a
+ * decoder thread, and {@link #tick()} uploads it on the render thread once decoding is done. Any number of textures can be in
+ * flight at once, each holding one mapped buffer until it is uploaded.
+ * <p/>
+ * All methods must be called on the render thread, the callbacks run there too.
+ */
+public final class StreamTextureLoader {
+
+	/** Receives the result of a load. */
+	public interface Callback {
+
+		/**
+		 * Called after the texture has been uploaded. Its transfer buffer has been released, the stream now only holds the
+		 * texture and belongs to the callback, which must destroy it eventually.
+		 */
+		void loaded(TextureStream texture);
+
+		/** Called if the decoder failed. The stream has been destroyed. */
+		void failed(PixelDecoder decoder, Throwable cause);
+
+	}
+
+	private final TextureStreamFactory factory;
+	private final ExecutorService      executor;
+
+	private final List<Load> loads = new ArrayList<Load>();
+
+	private int maxUploadsPerTick;
+
+	/**
+	 * @param factory the texture stream implementation
+	 * @param threads the number of decoder threads
+	 */
+	public StreamTextureLoader(final TextureStreamFactory factory, final int threads) {
+		if ( threads < 1 )
+			throw new IllegalArgumentException("Invalid number of threads: " + threads);
+
+		this.factory = factory;
+
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "PixelDecoder-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** Starts decoding the image. The result is passed to the callback from a later call to {@link #tick()}. */
+	public void load(final PixelDecoder decoder, final Callback callback) {
+		if ( decoder.getWidth() <= 0 || decoder.getHeight() <= 0 )
+			throw new IllegalArgumentException("Invalid dimensions: " + decoder.getWidth() + " x " + decoder.getHeight());
+
+		final Load load = new Load(decoder, callback);
+
+		load.stream = factory.create(load, 1);
+		load.stream.setFirstFrameSynchronous(false);
+		// Maps the buffer and hands it to a decoder thread
+		load.stream.snapshot();
+
+		loads.add(load);
+	}
+
+	/**
+	 * Uploads the textures that have been decoded and passes them to their callbacks. Never waits for a decoder.
+	 *
+	 * @return the number of textures still in flight
+	 */
+	public int tick() {
+		int uploads = 0;
+		for ( Iterator<Load> it = loads.iterator(); it.hasNext(); ) {
+			final Load load = it.next();
+
+			// Written before the buffer is released, so it is visible once the stream sees the buffer as done
+			if ( load.error != null ) {
+				load.stream.destroy();
+				it.remove();
+				load.callback.failed(load.decoder, load.error);
+				continue;
+			}
+
+			if ( 0 < maxUploadsPerTick && maxUploadsPerTick <= uploads )
+				continue;
+
+			load.stream.tick();
+			if ( load.stream.getFrameCount() == 0 )
+				continue;
+
+			uploads++;
+			load.stream.trim();
+			it.remove();
+			load.callback.loaded(load.stream);
+		}
+
+		return loads.size();
+	}
+
+	public int getPending() {
+		return loads.size();
+	}
+
+	public int getMaxUploadsPerTick() {
+		return maxUploadsPerTick;
+	}
+
+	/**
+	 * Limits the number of textures uploaded in a single call to {@link #tick()}, to keep frame times flat while many textures
+	 * finish decoding at once.
+	 *
+	 * @param maxUploadsPerTick the maximum number of uploads, or 0 for no limit
+	 */
+	public void setMaxUploadsPerTick(final int maxUploadsPerTick) {
+		this.maxUploadsPerTick = maxUploadsPerTick;
+	}
+
+	/** Waits for the pending decoders, destroys the streams of the textures in flight and stops the decoder threads. */
+	public void destroy() {
+		for ( Load load : loads )
+			load.stream.destroy();
+		loads.clear();
+
+		executor.shutdown();
+	}
+
+	private final class Load implements StreamHandler {
+
+		final PixelDecoder decoder;
+		final Callback     callback;
+
+		TextureStream stream;
+
+		volatile Throwable error;
+
+		Load(final PixelDecoder decoder, final Callback callback) {
+			this.decoder = decoder;
+			this.callback = callback;
+		}
+
+		public int getWidth() {
+			return decoder.getWidth();
+		}
+
+		public int getHeight() {
+			return decoder.getHeight();
+		}
+
+		public void process(final int width, final int height, final ByteBuffer data, final int stride, final StreamSlots.Signal signal) {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						decoder.decode(data, stride);
+					} catch (Throwable t) {
+						error = t;
+					} finally {
+						signal.release();
+					}
+				}
+			});
+		}
+
+	}
+
+}
@@ -35,14 +35,10 @@ import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.GLContext;
 import org.lwjgl.opengl.GLSync;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
-import sun.misc.Unsafe;
-
 import static org.lwjgl.opengl.EXTFramebufferBlit.*;
 import static org.lwjgl.opengl.EXTFramebufferMultisample.*;
 import static org.lwjgl.opengl.EXTFramebufferObject.*;
@@ -54,7 +50,9 @@ import static org.lwjgl.opengl.GL32.*;
 /** @author Spasi */
 public final class StreamUtil {
 
-	private static final int TEX_ROW_ALIGNMENT = 16 * 4; // 16 pixels
+	static final int TEX_ROW_ALIGNMENT = 16 * 4; // 16 pixels
+
+	private static final int CAPACITY_GRANULARITY = 128; // pixels
 
 	private StreamUtil() {
 	}
@@ -131,6 +129,27 @@ public final class StreamUtil {
 		return stride;
 	}
 
+	/**
+	 * Returns the dimension to allocate for a render target that must hold <code>size</code> pixels. Sizes are rounded up to
+	 * buckets, so that small changes (e.g. while dragging a window edge) fit the existing allocation. When an existing
+	 * allocation has to grow, some headroom is added for the resizes that are likely to follow.
+	 *
+	 * @param size     the required size in pixels
+	 * @param capacity the currently allocated size in pixels, 0 if nothing has been allocated
+	 * @param maxSize  the maximum size supported by the implementation
+	 *
+	 * @return the size to allocate
+	 */
+	public static int getCapacity(final int size, final int capacity, final int maxSize) {
+		if ( size <= capacity )
+			return capacity;
+
+		int bucket = capacity == 0 ? size : size + (size >> 3);
+		bucket = (bucket + CAPACITY_GRANULARITY - 1) & ~(CAPACITY_GRANULARITY - 1);
+
+		return Math.max(size, Math.min(bucket, maxSize));
+	}
+
 	private static void checkCapabilities(final ContextCapabilities caps) {
 		if ( !caps.OpenGL15 )
 			throw new UnsupportedOperationException("Support for OpenGL 1.5 or higher is required.");
@@ -244,54 +263,6 @@ public final class StreamUtil {
 		return Math.min(samples, glGetInteger(GL_MAX_SAMPLES));
 	}
 
-	static final class PageSizeProvider {
-
-		static final int PAGE_SIZE;
-
-		static {
-			int pageSize = 4096; // Assume 4kb if Unsafe is not available
-
-			try {
-				pageSize = getUnsafeInstance().pageSize();
-			} catch (Exception e) {
-				// ignore
-			}
-
-			PAGE_SIZE = pageSize;
-		}
-
-		private static Unsafe getUnsafeInstance() {
-			final Field[] fields = Unsafe.class.getDeclaredFields();
-
-			/*
-			Different runtimes use different names for the Unsafe singleton,
-			so we cannot use .getDeclaredField and we scan instead. For example:
-
-			Oracle: theUnsafe
-			PERC : m_unsafe_instance
-			Android: THE_ONE
-			*/
-			for ( Field field : fields ) {
-				if ( !field.getType().equals(Unsafe.class) )
-					continue;
-
-				final int modifiers = field.getModifiers();
-				if ( !(Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)) )
-					continue;
-
-				field.setAccessible(true);
-				try {
-					return (Unsafe)field.get(null);
-				} catch (IllegalAccessException e) {
-					// ignore
-				}
-				break;
-			}
-
-			throw new UnsupportedOperationException();
-		}
-	}
-
 	interface FBOUtil {
 
 		int genFramebuffers();
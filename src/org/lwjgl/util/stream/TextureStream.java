@@ -42,10 +42,39 @@ public interface TextureStream {
 
 	void snapshot();
 
+	/** Uploads the next frame if the handler has finished processing it. Never waits for the handler. */
 	void tick();
 
+	/**
+	 * Sets whether the first frame after start-up or a resize is uploaded in {@link #snapshot()}, which waits until the handler
+	 * has processed it. Otherwise it is uploaded by {@link #tick()} like all other frames and the texture is undefined until
+	 * then. Enabled by default.
+	 */
+	void setFirstFrameSynchronous(boolean enabled);
+
+	/** Returns the number of frames uploaded to the texture so far. */
+	long getFrameCount();
+
+	/**
+	 * Releases the transfer buffers of this stream, but keeps the texture. Frames that have not been uploaded yet are
+	 * discarded. The buffers are created again on the next call to {@link #snapshot()}.
+	 */
+	void trim();
+
 	void bind();
 
+	/**
+	 * Returns the name of the texture the frames are uploaded to, for use by other APIs. It may change when the stream is
+	 * resized, it is deleted by {@link #destroy()}.
+	 */
+	int getTexture();
+
+	/** Returns the number of bytes of GPU and pinned memory currently allocated by this stream. */
+	long getAllocatedBytes();
+
+	/** Sets the account this stream reports its allocations to, or null to not report them. */
+	void setBudgetAccount(StreamBudget.Account account);
+
 	void destroy();
 
 }
\ No newline at end of file
@@ -80,6 +80,10 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 
 	private boolean resetTexture;
 
+	private boolean firstFrameSynchronous = true;
+	private boolean trimmed;
+	private long    frames;
+
 	TextureStreamINTEL(final StreamHandler handler, final int transfersToBuffer) {
 		super(handler, transfersToBuffer);
 
@@ -111,6 +115,7 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 			throw new IllegalArgumentException("Invalid dimensions: " + width + " x " + height);
 
 		destroyObjects();
+		trimmed = false;
 
 		this.width = width;
 		this.height = height;
@@ -149,9 +154,26 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 		return texID;
 	}
 
+	public void setFirstFrameSynchronous(final boolean enabled) {
+		this.firstFrameSynchronous = enabled;
+	}
+
+	public long getFrameCount() {
+		return frames;
+	}
+
 	public void snapshot() {
-		if ( width != handler.getWidth() || height != handler.getHeight() )
+		if ( width != handler.getWidth() || height != handler.getHeight() ) {
 			resize(handler.getWidth(), handler.getHeight());
+			reportAllocation(getAllocatedBytes());
+		} else if ( trimmed ) {
+			for ( int i = 0; i < buffers.length; i++ )
+				buffers[i] = genLayoutLinearTexture(width, height);
+			glBindTexture(GL_TEXTURE_2D, 0);
+
+			trimmed = false;
+			reportAllocation(getAllocatedBytes());
+		}
 
 		if ( width == 0 || height == 0 )
 			return;
@@ -160,44 +182,41 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 
 		// Back-pressure. Make sure we never buffer more than <transfersToBuffer> frames ahead.
 
-		if ( processingState.get(trgPBO) )
+		if ( slots.isHandedOff(trgPBO) )
 			syncCopy(trgPBO);
 
 		pinnedBuffers[trgPBO] = glMapTexture2DINTEL(buffers[trgPBO], 0, height * stride, GL_MAP_WRITE_BIT, strideBuffer, layoutBuffer, pinnedBuffers[trgPBO]);
+		slots.set(trgPBO, StreamSlots.PINNED);
 
 		// Send the buffer for processing
 
-		processingState.set(trgPBO, true);
-		semaphores[trgPBO].acquireUninterruptibly();
-
 		handler.process(
 			width, height,
 			pinnedBuffers[trgPBO],
 			stride,
-			semaphores[trgPBO]
+			slots.process(trgPBO)
 		);
 
 		bufferIndex++;
 
 		if ( resetTexture ) {
-			syncCopy(trgPBO);
-			resetTexture = true;
+			resetTexture = false;
+			if ( firstFrameSynchronous )
+				syncCopy(trgPBO);
 		}
 	}
 
 	public void tick() {
 		final int srcPBO = (int)(currentIndex % transfersToBuffer);
-		if ( !processingState.get(srcPBO) )
+		if ( !slots.isHandedOff(srcPBO) )
 			return;
 
 		// Try again next frame
-		if ( !semaphores[srcPBO].tryAcquire() )
+		if ( !slots.isDone(srcPBO) )
 			return;
 
-		semaphores[srcPBO].release(); // Give it back
-
 		postProcess(srcPBO);
-		processingState.set(srcPBO, false);
+		slots.set(srcPBO, StreamSlots.FREE);
 
 		copyTexture(srcPBO);
 	}
@@ -219,6 +238,7 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 		fboUtil.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
 
 		currentIndex++;
+		frames++;
 	}
 
 	protected void postProcess(final int index) {
@@ -229,9 +249,18 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 		glBindTexture(GL_TEXTURE_2D, texID);
 	}
 
+	public int getTexture() {
+		return texID;
+	}
+
 	private void destroyObjects() {
-		for ( int i = 0; i < semaphores.length; i++ ) {
-			if ( processingState.get(i) )
+		destroyBuffers();
+		glDeleteTextures(texID);
+	}
+
+	private void destroyBuffers() {
+		for ( int i = 0; i < transfersToBuffer; i++ ) {
+			if ( slots.isHandedOff(i) )
 				waitForProcessingToComplete(i);
 		}
 
@@ -239,12 +268,32 @@ final class TextureStreamINTEL extends StreamBuffered implements TextureStream {
 			glDeleteTextures(buffers[i]);
 			buffers[i] = 0;
 		}
+	}
 
-		glDeleteTextures(texID);
+	public void trim() {
+		if ( width == 0 || height == 0 || trimmed )
+			return;
+
+		destroyBuffers();
+		// The discarded frames are never copied
+		currentIndex = bufferIndex;
+		trimmed = true;
+		reportAllocation(getAllocatedBytes());
+	}
+
+	public long getAllocatedBytes() {
+		if ( width == 0 || height == 0 )
+			return 0;
+
+		if ( trimmed )
+			return (long)width * height * 4;
+
+		return (long)buffers.length * height * stride + (long)width * height * 4;
 	}
 
 	public void destroy() {
 		destroyObjects();
+		reportAllocation(0);
 
 		fboUtil.deleteFramebuffers(bufferFBO);
 		fboUtil.deleteFramebuffers(texFBO);
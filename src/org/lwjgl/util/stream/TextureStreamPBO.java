@@ -45,6 +45,10 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 
 	private boolean resetTexture;
 
+	private boolean firstFrameSynchronous = true;
+	private boolean trimmed;
+	private long    frames;
+
 	protected TextureStreamPBO(final StreamHandler handler, final int transfersToBuffer) {
 		super(handler, transfersToBuffer);
 
@@ -72,6 +76,7 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 			throw new IllegalArgumentException("Invalid dimensions: " + width + " x " + height);
 
 		destroyObjects();
+		trimmed = false;
 
 		this.width = width;
 		this.height = height;
@@ -95,9 +100,19 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 		super.resizeBuffers(height, stride, GL_PIXEL_UNPACK_BUFFER, GL_STREAM_DRAW);
 	}
 
+	public void setFirstFrameSynchronous(final boolean enabled) {
+		this.firstFrameSynchronous = enabled;
+	}
+
+	public long getFrameCount() {
+		return frames;
+	}
+
 	public void snapshot() {
-		if ( width != handler.getWidth() || height != handler.getHeight() )
+		if ( width != handler.getWidth() || height != handler.getHeight() || trimmed ) {
 			resize(handler.getWidth(), handler.getHeight());
+			reportAllocation(getAllocatedBytes());
+		}
 
 		if ( width == 0 || height == 0 )
 			return;
@@ -106,26 +121,24 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 
 		// Back-pressure. Make sure we never buffer more than <transfersToBuffer> frames ahead.
 
-		if ( processingState.get(trgPBO) )
+		if ( slots.isHandedOff(trgPBO) )
 			syncUpload(trgPBO);
 
 		pinBuffer(trgPBO);
+		slots.set(trgPBO, StreamSlots.PINNED);
 
 		// Send the buffer for processing
 
-		processingState.set(trgPBO, true);
-		semaphores[trgPBO].acquireUninterruptibly();
-
 		handler.process(
 			width, height,
 			pinnedBuffers[trgPBO],
 			stride,
-			semaphores[trgPBO]
+			slots.process(trgPBO)
 		);
 
 		bufferIndex++;
 
-		if ( resetTexture ) // Synchronize to show the first frame immediately
+		if ( resetTexture && firstFrameSynchronous ) // Synchronize to show the first frame immediately
 			syncUpload(trgPBO);
 	}
 
@@ -133,7 +146,8 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 
 	public void tick() {
 		final int srcPBO = (int)(currentIndex % transfersToBuffer);
-		if ( !processingState.get(srcPBO) )
+		// Not sent for processing, or the handler is not done yet. Try again next frame.
+		if ( !slots.isDone(srcPBO) )
 			return;
 
 		syncUpload(srcPBO);
@@ -164,6 +178,7 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 		postUpload(srcPBO);
 
 		currentIndex++;
+		frames++;
 	}
 
 	protected abstract void postUpload(int index);
@@ -172,9 +187,13 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 		glBindTexture(GL_TEXTURE_2D, texID);
 	}
 
+	public int getTexture() {
+		return texID;
+	}
+
 	protected void destroyObjects() {
-		for ( int i = 0; i < semaphores.length; i++ ) {
-			if ( processingState.get(i) ) {
+		for ( int i = 0; i < transfersToBuffer; i++ ) {
+			if ( slots.isHandedOff(i) ) {
 				glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pbos[i]);
 				waitForProcessingToComplete(i);
 			}
@@ -183,13 +202,37 @@ abstract class TextureStreamPBO extends StreamBufferedPBO implements TextureStre
 		glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
 
 		for ( int i = 0; i < pbos.length; i++ ) {
-			if ( pbos[i] != 0 )
+			if ( pbos[i] != 0 ) {
 				glDeleteBuffers(pbos[i]);
+				pbos[i] = 0;
+			}
 		}
 	}
 
-	public void destroy() {
+	public void trim() {
+		if ( width == 0 || height == 0 || trimmed )
+			return;
+
+		destroyObjects();
+		trimmed = true;
+		reportAllocation(getAllocatedBytes());
+	}
+
+	public long getAllocatedBytes() {
+		if ( width == 0 || height == 0 )
+			return 0;
+
+		if ( trimmed )
+			return (long)width * height * 4;
+
+		return (long)transfersToBuffer * height * stride + (long)width * height * 4;
+	}
+
+	/** Subclasses release their objects in {@link #destroyObjects()}, so that the allocation is always reported. */
+	public final void destroy() {
 		destroyObjects();
+		glDeleteTextures(texID);
+		reportAllocation(0);
 	}
 
 }
\ No newline at end of file
@@ -68,8 +68,4 @@ public class TextureStreamPBODefault extends TextureStreamPBO {
 		glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
 	}
 
-	public void destroy() {
-		destroyObjects();
-	}
-
 }
\ No newline at end of file
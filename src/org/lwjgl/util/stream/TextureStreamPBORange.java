@@ -62,6 +62,8 @@ public class TextureStreamPBORange extends TextureStreamPBO {
 	}
 
 	protected void postUpload(final int index) {
+		if ( fences[index] != null )
+			glDeleteSync(fences[index]);
 		fences[index] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
 	}
 
@@ -79,8 +81,4 @@ public class TextureStreamPBORange extends TextureStreamPBO {
 		glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
 	}
 
-	public void destroy() {
-		destroyObjects();
-	}
-
 }
\ No newline at end of file
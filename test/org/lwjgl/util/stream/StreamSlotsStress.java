@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2002-2012 LWJGL Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'LWJGL' nor the names of
+ *   its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.lwjgl.util.stream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stress test of the {@link StreamSlots} hand-off between a stream thread and a handler thread. It lives in the test source
+ * root, in the package of StreamSlots to reach its package-private API, and is not part of the library. Run it with
+ * <code>java org.lwjgl.util.stream.StreamSlotsStress [iterations] [buffers]</code> with the compiled src and test roots on the
+ * class path, it exits with status 1 on the first failure.
+ * <p/>
+ * - Hand-off: the stream thread cycles through the buffers like a stream does, the handler thread checks that it sees the
+ * data written before each hand-off and releases the buffer after a random delay, often none, to race the park of the
+ * stream thread. A wait that does not complete within seconds is reported as a lost wake-up.
+ * - Timed waits: waits with very short timeouts expire while the handler releases, and must succeed when retried.
+ * - Interrupts: an interrupted wait keeps waiting and restores the interrupt flag.
+ * - Double release: releasing a buffer twice, or one that was never handed off, must throw.
+ */
+public final class StreamSlotsStress {
+
+	private static final long LOST_WAKEUP_TIMEOUT = 5L * 1000 * 1000 * 1000;
+
+	private StreamSlotsStress() {
+	}
+
+	public static void main(final String[] args) throws InterruptedException {
+		final int iterations = args.length < 1 ? 1000000 : Integer.parseInt(args[0]);
+		final int buffers = args.length < 2 ? 3 : Integer.parseInt(args[1]);
+
+		handOff(iterations, buffers, false);
+		System.out.println("Hand-off: " + iterations + " buffers passed");
+
+		handOff(iterations / 10, buffers, true);
+		System.out.println("Timed waits: " + iterations / 10 + " buffers passed");
+
+		interrupts(iterations / 100);
+		System.out.println("Interrupts: " + iterations / 100 + " waits passed");
+
+		doubleRelease();
+		System.out.println("Double release: passed");
+	}
+
+	private static void fail(final String message) {
+		System.err.println("FAILED: " + message);
+		System.exit(1);
+	}
+
+	private static void handOff(final int iterations, final int buffers, final boolean timed) throws InterruptedException {
+		final StreamSlots slots = new StreamSlots(buffers);
+		final int[] data = new int[buffers];
+		final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(buffers);
+
+		final Thread handler = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for ( int i = 0; i < iterations; i++ ) {
+						final Object[] item = queue.take();
+						final int index = (Integer)item[0];
+						if ( data[index] != i )
+							fail("Handler saw stale data in buffer " + index + ": " + data[index] + " instead of " + i);
+
+						final int delay = ThreadLocalRandom.current().nextInt(8);
+						if ( delay == 1 )
+							Thread.yield();
+						else if ( delay == 2 )
+							LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(50000));
+
+						((StreamSlots.Signal)item[1]).release();
+					}
+				} catch (InterruptedException e) {
+					fail("Handler interrupted");
+				}
+			}
+		}, "StreamSlotsStress handler");
+		handler.start();
+
+		for ( int i = 0; i < iterations; i++ ) {
+			final int index = i % buffers;
+
+			if ( slots.isHandedOff(index) ) {
+				if ( timed ) {
+					// Expires often, the buffer must still be released eventually
+					final long start = System.nanoTime();
+					while ( !slots.await(index, ThreadLocalRandom.current().nextInt(2000)) ) {
+						if ( LOST_WAKEUP_TIMEOUT < System.nanoTime() - start )
+							fail("Buffer " + index + " never released: " + slots);
+					}
+				} else if ( !slots.await(index, LOST_WAKEUP_TIMEOUT) )
+					fail("Lost wake-up on buffer " + index + ": " + slots);
+
+				if ( !slots.isDone(index) )
+					fail("Await returned before buffer " + index + " was released: " + slots);
+				slots.set(index, StreamSlots.FREE);
+			}
+
+			slots.set(index, StreamSlots.PINNED);
+			data[index] = i;
+			queue.put(new Object[] { index, slots.process(index) });
+		}
+
+		handler.join();
+	}
+
+	private static void interrupts(final int iterations) throws InterruptedException {
+		final StreamSlots slots = new StreamSlots(1);
+		final Thread stream = Thread.currentThread();
+
+		for ( int i = 0; i < iterations; i++ ) {
+			final StreamSlots.Signal signal = slots.process(0);
+			final Thread handler = new Thread(new Runnable() {
+				public void run() {
+					stream.interrupt();
+					LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(100000));
+					signal.release();
+				}
+			});
+			handler.start();
+
+			if ( !slots.await(0, -1) )
+				fail("Interrupted wait returned without the buffer");
+			// The interrupt comes before the release, either before or during the wait, it has to be kept in both cases
+			if ( !Thread.interrupted() )
+				fail("Interrupt flag lost");
+			handler.join();
+			slots.set(0, StreamSlots.FREE);
+		}
+	}
+
+	private static void doubleRelease() {
+		final StreamSlots slots = new StreamSlots(1);
+
+		final StreamSlots.Signal signal = slots.process(0);
+		signal.release();
+		expectIllegalState(signal, "Double release");
+		if ( !slots.isDone(0) )
+			fail("Double release changed the state: " + slots);
+
+		// A late release after the stream has reused the buffer
+		slots.set(0, StreamSlots.FREE);
+		expectIllegalState(signal, "Release of a free buffer");
+		slots.set(0, StreamSlots.PINNED);
+		expectIllegalState(signal, "Release of a pinned buffer");
+
+		// The buffer is still usable
+		slots.process(0).release();
+		if ( !slots.await(0, 0) )
+			fail("Release after a failed release was lost: " + slots);
+	}
+
+	private static void expectIllegalState(final StreamSlots.Signal signal, final String name) {
+		try {
+			signal.release();
+			fail(name + " did not throw");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+}